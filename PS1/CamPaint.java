@@ -1,6 +1,7 @@
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.swing.*;
 
@@ -13,13 +14,21 @@ import javax.swing.*;
  * Finished draw(), processImage(), and handleMousePress() methods to allow for Webcam-based drawing
  */
 public class CamPaint extends Webcam {
-    private char displayMode = 'w';			// what to display: 'w': live webcam, 'r': recolored image, 'p': painting
+    private volatile char displayMode = 'w';	// what to display: 'w': live webcam, 'r': recolored image, 'p': painting
     private RegionFinder finder;			// handles the finding
-    private Color targetColor;          	// color of regions of interest (set by mouse press)
+    private volatile Color targetColor;  	// color of regions of interest (set by mouse press)
     private Color paintColor = Color.blue;	// the color to put into the painting from the "brush"
-    private BufferedImage painting;			// the resulting masterpiece
-    private BufferedImage recolored;		// recolored regions over webcam
-    private ArrayList<Point> paint;         // holds painted pixels for painting
+    private PaintCanvas painting;			// the resulting masterpiece
+    private volatile BufferedImage recolored;	// recolored regions over webcam, null if nothing is being tracked
+    private volatile FramePipeline pipeline;	// when non-null, detection runs on the pipeline's own thread
+    private boolean tracking = false;       // whether to search for the brush only near where it was last frame
+    private static final int motionMargin = 40;    // how far (in pixels) the brush may move between frames when tracking
+    private Rectangle brushBounds;          // where the brush was last frame, null if lost
+    private int trackHits = 0, trackMisses = 0;    // tracking windows that found the brush, and those that needed a full scan
+    private volatile StageTimer timer;      // per-stage frame timing, shown over the display; null when off
+    private static final int timingLogFrames = 300;    // how often (in frames) to print the timing while it's on
+    private int timedFrames = 0;            // frames processed since timing was turned on
+    private final Queue<Runnable> changes = new ConcurrentLinkedQueue<Runnable>();   // from the GUI, for detect to make between frames
 
 
     /**
@@ -34,9 +43,10 @@ public class CamPaint extends Webcam {
      * Resets the painting to a blank image
      */
     protected void clearPainting() {
-        paint = new ArrayList<Point>(); // reset painted region
         targetColor = null;             // reset targetColor
-        painting = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);   // reset painting image
+        brushBounds = null;             // and forget where the brush was
+        if (painting == null) painting = new PaintCanvas(width, height);
+        else painting.clear();          // reset painting image
     }
 
     /**
@@ -45,65 +55,166 @@ public class CamPaint extends Webcam {
      */
     @Override
     public void draw(Graphics g) {
+        long start = System.nanoTime();
+        FramePipeline pipe = pipeline;
+        BufferedImage frame = pipe != null ? pipe.beginDraw() : image;   // when pipelined, the newest detected frame
+        if (frame == null) frame = image;
+
         if (displayMode == 'w') {                               // display standard webcam mode, no painting
-            g.drawImage(image, 0, 0, null);
+            g.drawImage(frame, 0, 0, null);
         }
         if (displayMode == 'p') {
-            g.drawImage(painting, 0, 0, null);   // display painting
+            g.drawImage(painting.getImage(), 0, 0, null);   // display painting
         }
 		if (displayMode == 'r') {
-			g.drawImage(recolored, 0, 0, null);  // display recolored regions over webcam image
+			BufferedImage shown = pipe != null ? frame : recolored;    // when pipelined, detect put the recoloring in the frame
+			g.drawImage(shown != null ? shown : frame, 0, 0, null);  // display recolored regions over webcam image
 		}
+        StageTimer t = timer;
+        if (t != null) drawTiming(g, t);
+        if (pipe != null) pipe.endDraw(start);
+    }
+
+    /**
+     * Draws the per-stage timing in the corner, over whatever is displayed
+     */
+    private void drawTiming(Graphics g, StageTimer t) {
+        String[] lines = t.getLines();
+        g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        int lineHeight = g.getFontMetrics().getHeight();
+        g.setColor(new Color(0, 0, 0, 160));
+        g.fillRect(0, 0, 360, lineHeight * lines.length + 8);
+        g.setColor(Color.white);
+        for (int i = 0; i < lines.length; i++) {
+            g.drawString(lines[i], 4, 4 + lineHeight * (i + 1) - g.getFontMetrics().getDescent());
+        }
     }
 
     /**
-     * Webcam method, here finding regions and updating the painting.
+     * Webcam method, here finding regions and updating the painting,
+     * or just handing the frame off to the detection thread if pipelined.
      */
     @Override
     public void processImage() {
-        if (paint == null) paint = new ArrayList<>();  // create new ArrayList for painted region
+        StageTimer t = timer;
+        long start = t != null ? StageTimer.start() : 0;
+        FramePipeline pipe = pipeline;
+        if (pipe != null) {
+            pipe.capture(image);
+            if (pipe.getNumCaptured() % 300 == 0) System.out.println(pipe);
+        }
+        else {
+            detect(image);
+        }
+        if (t != null) {
+            t.record("frame", start);
+            if (++timedFrames % timingLogFrames == 0) System.out.print("timing over the last frames:\n" + t);
+        }
+    }
 
+    /**
+     * Finds regions in the frame and updates the painting
+     */
+    private void detect(BufferedImage frame) {
+        Runnable change;
+        while ((change = changes.poll()) != null) change.run();
+
+        StageTimer t = timer;
+        long start = t != null ? StageTimer.start() : 0;
         if (displayMode == 'p') {  // if painting mode
-            finder.setImage(image);
+            finder.setImage(frame);
 
             if (targetColor != null) {
-                finder.findRegions(targetColor);
+                findBrush();
 
-                if (finder.largestRegion() != null) {
-                    for (Point i : finder.largestRegion()) {  // add non-duped pixels to be painted from paintbrush
-                        if (!paint.contains(i)) {
-                            paint.add(i);
-                        }
-                    }
+                int brush = finder.getLargestIndex();
+                if (brush >= 0) {   // paint the pixels the paintbrush newly covers
+                    long paintStart = t != null ? StageTimer.start() : 0;
+                    painting.paint(finder.getSpans(brush), 0, paintColor.getRGB());
+                    if (t != null) t.record("paint", paintStart);
                 }
             }
-            for (Point i : paint) {
-                painting.setRGB(i.x, i.y, paintColor.getRGB());  // paint pixels on painting
-            }
         }
         if (displayMode == 'w') {  // if webcam display selected
-            finder.setImage(image);
+            finder.setImage(frame);
 
             if (targetColor != null) {
-                finder.findRegions(targetColor);
+                findBrush();
 
-                if (finder.largestRegion() != null) {
-                    for (Point i : finder.largestRegion()) {            // track and make paintbrush paintColor
-                        image.setRGB(i.x, i.y, paintColor.getRGB());
-                    }
+                int brush = finder.getLargestIndex();
+                if (brush >= 0) {
+                    long paintStart = t != null ? StageTimer.start() : 0;
+                    finder.getSpans(brush).paint(frame, 0, paintColor.getRGB());  // track and make paintbrush paintColor
+                    if (t != null) t.record("paint", paintStart);
                 }
             }
         }
         if (displayMode == 'r') {   // if recolored image selected
-            recolored = image;
-            finder.setImage(image);
+            finder.setImage(frame);
 
             if (targetColor != null) {
                 finder.findRegions(targetColor);
                 finder.recolorImage();
 
                 recolored = finder.getRecoloredImage();    // display region growing regions in random colors
+                if (frame != image) showInFrame(recolored, frame);
+            }
+            else {
+                recolored = null;                           // nothing to recolor, so display the webcam image
+            }
+        }
+        if (t != null) t.record("detect", start);
+    }
+
+    /**
+     * Copies the recolored image over a pipeline frame, so that it's drawn from the frame's slot (which the
+     * pipeline keeps from being reused while it's drawn) rather than from the finder's buffers, which the
+     * detection thread overwrites every other frame
+     */
+    private static void showInFrame(BufferedImage recolored, BufferedImage frame) {
+        int w = frame.getWidth(), h = frame.getHeight();
+        int[] src = RegionFinder.intPixels(recolored), dst = RegionFinder.intPixels(frame);
+        if (src != null && dst != null) System.arraycopy(src, 0, dst, 0, w * h);
+        else frame.setRGB(0, 0, w, h, recolored.getRGB(0, 0, w, h, null, 0, w), 0, w);
+    }
+
+    /**
+     * Finds the brush: the largest region of targetColor.
+     * When tracking, first searches just a window around where the brush was last frame, widened by motionMargin,
+     * and only falls back to scanning the whole frame if the brush isn't found there or runs off the window's edge.
+     */
+    private void findBrush() {
+        if (tracking && brushBounds != null) {
+            Rectangle window = new Rectangle(brushBounds.x - motionMargin, brushBounds.y - motionMargin,
+                    brushBounds.width + 2 * motionMargin, brushBounds.height + 2 * motionMargin);
+            finder.findRegions(targetColor, window);
+            Rectangle found = finder.getLargestBounds();
+            boolean cutOff = found != null &&
+                    ((found.x <= window.x && window.x > 0)
+                    || (found.y <= window.y && window.y > 0)
+                    || (found.x + found.width >= window.x + window.width && window.x + window.width < finder.getImage().getWidth())
+                    || (found.y + found.height >= window.y + window.height && window.y + window.height < finder.getImage().getHeight()));
+            if (found != null && !cutOff) {
+                trackHits++;
+                brushBounds = found;
+                reportTracking(false);
+                return;
             }
+            trackMisses++;
+            reportTracking(false);
+        }
+        finder.findRegions(targetColor);
+        if (tracking) brushBounds = finder.getLargestBounds();
+    }
+
+    /**
+     * Prints the tracking hit and miss rates every 100 tracked frames, or right away if forced
+     */
+    private void reportTracking(boolean force) {
+        int total = trackHits + trackMisses;
+        if (total > 0 && (force || total % 100 == 0)) {
+            System.out.println("tracking: " + trackHits + " hits, " + trackMisses + " misses ("
+                    + (100 * trackHits / total) + "% hit rate)");
         }
     }
 
@@ -115,28 +226,105 @@ public class CamPaint extends Webcam {
      */
     @Override
     public void handleMousePress(int x, int y) {
+        Color color = null;
         if (displayMode == 'w') {
-            targetColor = new Color(image.getRGB(x, y));
-            System.out.println("tracking " + targetColor);
+            color = new Color(image.getRGB(x, y));
         }
         if (displayMode == 'p') {
-            targetColor = new Color(painting.getRGB(x, y));
-            System.out.println("tracking " + targetColor);
+            color = new Color(painting.getImage().getRGB(x, y));
         }
         if (displayMode == 'r') {
-            targetColor = new Color(recolored.getRGB(x, y));
-            System.out.println("tracking " + targetColor);
+            BufferedImage shown = recolored;
+            color = new Color((shown != null ? shown : image).getRGB(x, y));
         }
+        if (color == null) return;
+        final Color target = color;
+        betweenFrames(new Runnable() {
+            public void run() {
+                targetColor = target;
+                brushBounds = null;
+                System.out.println("tracking " + targetColor);
+            }
+        });
     }
 
     /**
-     * DrawingGUI method, here doing various drawing commands
+     * DrawingGUI method, here doing various drawing commands.
+     * Other than toggling the pipeline, they're made between frames, by whichever thread is detecting.
      */
     @Override
-    public void handleKeyPress(char k) {
+    public void handleKeyPress(final char k) {
+        if (k == 'l') { // toggle running detection on its own thread, dropping frames it can't keep up with
+            if (pipeline == null) {
+                FramePipeline pipe = new FramePipeline(new FramePipeline.Detector() {
+                    public void detect(BufferedImage frame) {
+                        CamPaint.this.detect(frame);
+                    }
+                }, new Runnable() {
+                    public void run() {
+                        repaint();
+                    }
+                });
+                pipe.start();
+                pipeline = pipe;
+                System.out.println("pipeline on");
+            }
+            else {
+                pipeline.stop();
+                System.out.println("pipeline off; " + pipeline);
+                pipeline = null;
+            }
+        }
+        else {
+            betweenFrames(new Runnable() {
+                public void run() {
+                    applyKey(k);
+                }
+            });
+        }
+    }
+
+    /**
+     * Has detect make the change before it starts on its next frame, so that the painting, the tracking state,
+     * and the finder's settings never change in the middle of one, even while detection runs on the pipeline's thread
+     */
+    private void betweenFrames(Runnable change) {
+        changes.add(change);
+    }
+
+    /**
+     * Makes the change for a key press, between frames
+     */
+    private void applyKey(char k) {
         if (k == 'p' || k == 'r' || k == 'w') { // display: painting, recolored image, or webcam
             displayMode = k;
         }
+        else if (k == 't') { // toggle tracking the brush near where it was last frame
+            tracking = !tracking;
+            brushBounds = null;
+            System.out.println("tracking " + (tracking ? "on" : "off"));
+            reportTracking(true);
+        }
+        else if (k == 'f') { // toggle the per-stage frame timing overlay (and its periodic printout)
+            if (timer == null) {
+                timedFrames = 0;
+                timer = new StageTimer();
+            }
+            else {
+                System.out.print("timing:\n" + timer);
+                timer = null;
+            }
+            finder.setTimer(timer);
+            System.out.println("timing " + (timer != null ? "on" : "off"));
+        }
+        else if (k == 'n') { // toggle removing specks of noise from the color matches before finding regions
+            finder.setOpenRadius(finder.getOpenRadius() > 0 ? 0 : 1);
+            System.out.println("speck removal " + (finder.getOpenRadius() > 0 ? "on" : "off"));
+        }
+        else if (k == 'e') { // toggle perceptual (CIELAB Delta E) color matching
+            finder.setMaxDeltaE(finder.getMaxDeltaE() > 0 ? 0 : 10);
+            System.out.println("Delta E matching " + (finder.getMaxDeltaE() > 0 ? "on" : "off"));
+        }
         else if (k == 'c') { // clear
             clearPainting();
         }
@@ -144,7 +332,7 @@ public class CamPaint extends Webcam {
             saveImage(finder.getRecoloredImage(), "pictures/recolored.png", "png");
         }
         else if (k == 's') { // save the painting
-            saveImage(painting, "pictures/painting.png", "png");
+            saveImage(painting.getImage(), "pictures/painting.png", "png");
         }
         else {
             System.out.println("unexpected key "+k);
@@ -0,0 +1,129 @@
+import java.util.Arrays;
+
+/**
+ * Index of one frame's pixels by color, for answering several target-color queries on the same frame
+ * (e.g., clicking around a still image) without rescanning it each time. Colors are bucketed 5 bits per channel
+ * and the pixels are counting-sorted by bucket, so a query only visits the buckets within reach of the target:
+ * buckets entirely within maxColorDiff are taken wholesale, those partly within have their pixels tested,
+ * and the rest are skipped.
+ *
+ * @author Paige Harris and Cha Krupka, Dartmouth CS10, Spring 2022
+ */
+public class ColorBucketIndex {
+	static final int numBuckets = 32768;                    // one per LabColorMatcher.index, 5 bits per channel
+	private final int[] bucketStart = new int[numBuckets + 1];  // bucket b's pixels are positions[bucketStart[b]..bucketStart[b+1])
+	private final int[] next = new int[numBuckets];         // where each bucket's next pixel goes, while building
+	private int[] positions = new int[0];                   // pixel indices, bucket by bucket
+	private int[] colors = new int[0];                      // packed RGB of each entry of positions, so queries needn't look back at the frame
+	private int size = 0;                                   // how many pixels are indexed
+
+	/**
+	 * Indexes the first n pixels (reusing the storage of the previous frame's index when it's big enough)
+	 * @param rgb	packed RGB pixels
+	 */
+	public void build(int[] rgb, int n) {
+		size = n;
+		if (positions.length < n) {
+			positions = new int[n];
+			colors = new int[n];
+		}
+		// count each bucket, turn the counts into starts, then place each pixel
+		Arrays.fill(bucketStart, 0);
+		for (int i = 0; i < n; i++) bucketStart[LabColorMatcher.index(rgb[i]) + 1]++;
+		for (int b = 0; b < numBuckets; b++) bucketStart[b + 1] += bucketStart[b];
+		System.arraycopy(bucketStart, 0, next, 0, numBuckets);
+		for (int i = 0; i < n; i++) {
+			int k = next[LabColorMatcher.index(rgb[i])]++;
+			positions[k] = i;
+			colors[k] = rgb[i];
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Sets the bits of the pixels within maxColorDiff of the target (the bits must start out clear)
+	 * @param bits			one bit per pixel, as in ColorMatchMask
+	 * @param target		packed RGB target color
+	 * @param maxColorDiff	how far (Euclidean RGB distance) a pixel color may be from the target to match
+	 * @return how many pixels were visited
+	 */
+	public int fill(long[] bits, int target, int maxColorDiff) {
+		int tr = (target >> 16) & 0xff, tg = (target >> 8) & 0xff, tb = target & 0xff;
+		int limit = maxColorDiff * maxColorDiff;
+		int visited = 0;
+		// only the buckets whose channel ranges overlap the target's +/- maxColorDiff can hold a match
+		int r0 = Math.max(0, tr - maxColorDiff) >> 3, r1 = Math.min(255, tr + maxColorDiff) >> 3;
+		int g0 = Math.max(0, tg - maxColorDiff) >> 3, g1 = Math.min(255, tg + maxColorDiff) >> 3;
+		int b0 = Math.max(0, tb - maxColorDiff) >> 3, b1 = Math.min(255, tb + maxColorDiff) >> 3;
+		for (int r = r0; r <= r1; r++) {
+			for (int g = g0; g <= g1; g++) {
+				for (int b = b0; b <= b1; b++) {
+					int bucket = (r << 10) | (g << 5) | b;
+					if (nearSq(target, bucket) > limit) continue;	// no color in the bucket is close enough
+					int far = sq(reach(tr, r << 3)) + sq(reach(tg, g << 3)) + sq(reach(tb, b << 3));
+					int end = bucketStart[bucket + 1];
+					visited += end - bucketStart[bucket];
+					for (int k = bucketStart[bucket]; k < end; k++) {
+						int c = colors[k];
+						if (far > limit) {	// only partly within reach, so test the pixel
+							int dr = ((c >> 16) & 0xff) - tr, dg = ((c >> 8) & 0xff) - tg, db = (c & 0xff) - tb;
+							if (dr * dr + dg * dg + db * db > limit) continue;
+						}
+						int i = positions[k];
+						bits[i >>> 6] |= 1L << i;
+					}
+				}
+			}
+		}
+		return visited;
+	}
+
+	/**
+	 * Sets the bits of the pixels whose bucket matches in a LabColorMatcher table (the bits must start out clear)
+	 * @return how many pixels were visited
+	 */
+	public int fill(long[] bits, long[] table) {
+		int visited = 0;
+		for (int w = 0; w < table.length; w++) {
+			for (long word = table[w]; word != 0; word &= word - 1) {
+				int bucket = (w << 6) + Long.numberOfTrailingZeros(word);
+				visited += bucketStart[bucket + 1] - bucketStart[bucket];
+				for (int k = bucketStart[bucket]; k < bucketStart[bucket + 1]; k++) {
+					int i = positions[k];
+					bits[i >>> 6] |= 1L << i;
+				}
+			}
+		}
+		return visited;
+	}
+
+	/**
+	 * Returns the squared distance from the packed RGB color to the nearest color in the bucket
+	 * (as numbered by LabColorMatcher.index)
+	 */
+	static int nearSq(int rgb, int bucket) {
+		return sq(gap((rgb >> 16) & 0xff, (bucket >> 10) << 3)) + sq(gap((rgb >> 8) & 0xff, ((bucket >> 5) & 31) << 3))
+				+ sq(gap(rgb & 0xff, (bucket & 31) << 3));
+	}
+
+	/**
+	 * Returns how far the value is from the range lo to lo+7 (one bucket's extent in a channel)
+	 */
+	private static int gap(int value, int lo) {
+		return value < lo ? lo - value : value > lo + 7 ? value - (lo + 7) : 0;
+	}
+
+	/**
+	 * Returns how far the value is from the farther end of the range lo to lo+7
+	 */
+	private static int reach(int value, int lo) {
+		return Math.max(Math.abs(value - lo), Math.abs(value - (lo + 7)));
+	}
+
+	private static int sq(int x) {
+		return x * x;
+	}
+}
@@ -0,0 +1,161 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * One bit per pixel telling whether the pixel's color is within maxColorDiff of the target color,
+ * computed once per frame so region growing only has to test bits.
+ * Bit i (pixel y*width + x) lives in word i/64, at position i%64.
+ *
+ * @author Paige Harris and Cha Krupka, Dartmouth CS10, Spring 2022
+ */
+public class ColorMatchMask {
+	private static final int wordsPerTask = 4096;           // how finely buildParallel splits the work
+	private long[] bits = new long[0];                      // the mask, reused from frame to frame
+	private int size = 0;                                   // how many pixels the mask covers
+
+	public long[] getBits() {
+		return bits;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns how many words of bits are in use
+	 */
+	public int numWords() {
+		return (size + 63) >>> 6;
+	}
+
+	/**
+	 * Returns whether pixel i matched
+	 */
+	public boolean get(int i) {
+		return (bits[i >>> 6] & (1L << i)) != 0;
+	}
+
+	/**
+	 * Sizes the mask for n pixels, keeping the storage if it is big enough
+	 */
+	private void resize(int n) {
+		size = n;
+		if (bits.length < numWords()) bits = new long[numWords()];
+	}
+
+	/**
+	 * Sets the mask for the first n pixels
+	 * @param rgb			packed RGB pixels
+	 * @param target		packed RGB target color
+	 * @param maxColorDiff	how far (Euclidean RGB distance) a pixel color may be from the target to match
+	 */
+	public void build(int[] rgb, int n, int target, int maxColorDiff) {
+		resize(n);
+		buildWords(rgb, 0, numWords(), target, maxColorDiff);
+	}
+
+	/**
+	 * Sets the mask for the first n pixels from a LabColorMatcher table
+	 * @param rgb			packed RGB pixels
+	 * @param table			which quantized colors match
+	 */
+	public void build(int[] rgb, int n, long[] table) {
+		resize(n);
+		buildWords(rgb, 0, numWords(), table);
+	}
+
+	/**
+	 * Sets the mask for the indexed pixels from a ColorBucketIndex, visiting only the pixels with colors near the target
+	 * @param target		packed RGB target color
+	 * @param maxColorDiff	how far (Euclidean RGB distance) a pixel color may be from the target to match
+	 */
+	public void build(ColorBucketIndex index, int target, int maxColorDiff) {
+		resize(index.size());
+		Arrays.fill(bits, 0, numWords(), 0L);
+		index.fill(bits, target, maxColorDiff);
+	}
+
+	/**
+	 * Sets the mask for the indexed pixels from a ColorBucketIndex and a LabColorMatcher table
+	 */
+	public void build(ColorBucketIndex index, long[] table) {
+		resize(index.size());
+		Arrays.fill(bits, 0, numWords(), 0L);
+		index.fill(bits, table);
+	}
+
+	/**
+	 * Same as build, but splits the frame into chunks of whole words and builds them concurrently
+	 */
+	public void buildParallel(int[] rgb, int n, int target, int maxColorDiff, ForkJoinPool pool) {
+		buildParallel(rgb, n, target, maxColorDiff, null, pool);
+	}
+
+	/**
+	 * Same as build from a table, but splits the frame into chunks of whole words and builds them concurrently
+	 */
+	public void buildParallel(int[] rgb, int n, long[] table, ForkJoinPool pool) {
+		buildParallel(rgb, n, 0, 0, table, pool);
+	}
+
+	/**
+	 * Builds the mask in chunks on the pool, from the table if it's not null and otherwise by RGB distance
+	 */
+	private void buildParallel(final int[] rgb, int n, final int target, final int maxColorDiff, final long[] table,
+			ForkJoinPool pool) {
+		resize(n);
+		final List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+		for (int from = 0; from < numWords(); from += wordsPerTask) {
+			final int w0 = from, w1 = Math.min(numWords(), from + wordsPerTask);
+			tasks.add(ForkJoinTask.adapt(new Runnable() {
+				public void run() {
+					if (table != null) buildWords(rgb, w0, w1, table);
+					else buildWords(rgb, w0, w1, target, maxColorDiff);
+				}
+			}));
+		}
+		pool.invoke(ForkJoinTask.adapt(new Runnable() {
+			public void run() {
+				ForkJoinTask.invokeAll(tasks);
+			}
+		}));
+	}
+
+	/**
+	 * Fills words w0 to w1-1. Distances are compared squared, in ints, and the inner loop is branch-free:
+	 * (d - limit - 1) is negative exactly when d <= limit, so its sign bit is the match bit.
+	 */
+	private void buildWords(int[] rgb, int w0, int w1, int target, int maxColorDiff) {
+		int tr = (target >> 16) & 0xff, tg = (target >> 8) & 0xff, tb = target & 0xff;
+		int limit = maxColorDiff * maxColorDiff;
+		for (int w = w0; w < w1; w++) {
+			int base = w << 6, end = Math.min(base + 64, size);
+			long word = 0;
+			for (int i = base; i < end; i++) {
+				int c = rgb[i];
+				int dr = ((c >> 16) & 0xff) - tr, dg = ((c >> 8) & 0xff) - tg, db = (c & 0xff) - tb;
+				int d = dr * dr + dg * dg + db * db;
+				word |= (long) ((d - limit - 1) >>> 31) << (i - base);
+			}
+			bits[w] = word;
+		}
+	}
+
+	/**
+	 * Fills words w0 to w1-1 by probing the table with each pixel's quantized color
+	 */
+	private void buildWords(int[] rgb, int w0, int w1, long[] table) {
+		for (int w = w0; w < w1; w++) {
+			int base = w << 6, end = Math.min(base + 64, size);
+			long word = 0;
+			for (int i = base; i < end; i++) {
+				int q = LabColorMatcher.index(rgb[i]);
+				word |= ((table[q >>> 6] >>> q) & 1L) << (i - base);
+			}
+			bits[w] = word;
+		}
+	}
+}
@@ -0,0 +1,211 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Runs detection on its own thread, decoupled from capture and display by a small ring of frame slots.
+ * Capture copies each new frame into a free slot and hands it to the detection thread; if detection hasn't
+ * gotten to the previous one yet, that one is dropped (latest frame wins). Detected frames are handed to the
+ * display the same way, so a slow frame never blocks capturing or drawing.
+ * Keeps per-stage latency totals and a dropped-frame count.
+ *
+ * @author Paige Harris and Cha Krupka, Dartmouth CS10, Spring 2022
+ */
+public class FramePipeline {
+	/**
+	 * What the detection thread does with each frame (it may modify the frame)
+	 */
+	public interface Detector {
+		public void detect(BufferedImage frame);
+	}
+
+	// A slot is in at most one of these roles at a time; the rest are free. With five roles and
+	// six slots there is always a free one to capture into.
+	private static final int numSlots = 6;
+	private final BufferedImage[] slots = new BufferedImage[numSlots];
+	private final long[] capturedAt = new long[numSlots];  // when each slot's frame was captured (nanos)
+	private int filling = -1;                               // being copied into by capture
+	private int captured = -1;                              // newest captured frame, waiting for detection
+	private int detecting = -1;                             // being worked on by detection
+	private int shown = -1;                                 // newest detected frame, for display
+	private int drawing = -1;                               // being drawn
+
+	private final Detector detector;                        // the detection stage
+	private final Runnable onDetected;                      // called after each detected frame, e.g., to repaint
+	private Thread thread;                                  // runs detection, null when stopped
+	private static final long stopMillis = 1000;            // how long stop waits for the frame being detected
+
+	// Statistics: total nanos spent per stage, and frame counts
+	private long captureNanos, waitNanos, detectNanos, drawNanos;
+	private int numCaptured, numDropped, numDetected, numDrawn;
+
+	public FramePipeline(Detector detector, Runnable onDetected) {
+		this.detector = detector;
+		this.onDetected = onDetected;
+	}
+
+	/**
+	 * Starts the detection thread, if it isn't already running
+	 */
+	public synchronized void start() {
+		if (thread != null) return;
+		thread = new Thread(new Runnable() {
+			public void run() {
+				detectLoop();
+			}
+		}, "detection");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the detection thread, waiting (up to stopMillis) for it to finish the frame it's on, if any,
+	 * so that the detector's state can be used from other threads afterwards
+	 */
+	public void stop() {
+		Thread stopping;
+		synchronized (this) {
+			stopping = thread;
+			if (stopping == null) return;
+			stopping.interrupt();
+			thread = null;
+		}
+		// join outside the lock: the detection thread needs it to finish up
+		try {
+			stopping.join(stopMillis);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (stopping.isAlive()) System.err.println("detection thread still running after " + stopMillis + " ms");
+	}
+
+	/**
+	 * Capture stage: copies the frame into a free slot and hands it to detection,
+	 * dropping the previously captured frame if detection hasn't taken it yet
+	 */
+	public void capture(BufferedImage frame) {
+		long start = System.nanoTime();
+		int slot;
+		synchronized (this) {
+			slot = freeSlot();
+			filling = slot;
+		}
+		BufferedImage copy = slots[slot];
+		int w = frame.getWidth(), h = frame.getHeight();
+		if (copy == null || copy.getWidth() != w || copy.getHeight() != h) {
+			copy = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+			slots[slot] = copy;
+		}
+		int[] data = ((DataBufferInt) copy.getRaster().getDataBuffer()).getData();
+		int[] src = RegionFinder.intPixels(frame);
+		if (src != null) System.arraycopy(src, 0, data, 0, w * h);
+		else frame.getRGB(0, 0, w, h, data, 0, w);
+
+		synchronized (this) {
+			if (captured >= 0) numDropped++;	// never got detected; its slot is free again
+			captured = slot;
+			capturedAt[slot] = System.nanoTime();
+			filling = -1;
+			numCaptured++;
+			captureNanos += capturedAt[slot] - start;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Display stage: returns the newest detected frame, reserved until endDraw; null if there is none yet
+	 */
+	public synchronized BufferedImage beginDraw() {
+		drawing = shown;
+		return drawing >= 0 ? slots[drawing] : null;
+	}
+
+	/**
+	 * Releases the frame from beginDraw
+	 * @param start		when drawing started (nanos), for the statistics
+	 */
+	public synchronized void endDraw(long start) {
+		drawing = -1;
+		numDrawn++;
+		drawNanos += System.nanoTime() - start;
+	}
+
+	/**
+	 * Detection stage: repeatedly takes the newest captured frame and runs the detector on it
+	 */
+	private void detectLoop() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				int slot;
+				synchronized (this) {
+					while (captured < 0) wait();
+					slot = detecting = captured;
+					captured = -1;
+				}
+				long start = System.nanoTime();
+				detector.detect(slots[slot]);
+				long end = System.nanoTime();
+				synchronized (this) {
+					shown = slot;	// the previously shown frame is free again, unless it's being drawn
+					detecting = -1;
+					numDetected++;
+					waitNanos += start - capturedAt[slot];
+					detectNanos += end - start;
+				}
+				if (onDetected != null) onDetected.run();
+			}
+		}
+		catch (InterruptedException e) {
+			// stopped
+		}
+	}
+
+	/**
+	 * Returns a slot not in any role
+	 */
+	private int freeSlot() {
+		for (int s = 0; s < numSlots; s++) {
+			if (s != filling && s != captured && s != detecting && s != shown && s != drawing) return s;
+		}
+		throw new IllegalStateException("no free frame slot");
+	}
+
+	public synchronized int getNumCaptured() {
+		return numCaptured;
+	}
+
+	public synchronized int getNumDropped() {
+		return numDropped;
+	}
+
+	public synchronized int getNumDetected() {
+		return numDetected;
+	}
+
+	/**
+	 * Returns the average milliseconds per frame of each stage: capture, waiting for detection, detection, and drawing
+	 */
+	public synchronized double[] getStageMillis() {
+		return new double[] { avgMillis(captureNanos, numCaptured), avgMillis(waitNanos, numDetected),
+				avgMillis(detectNanos, numDetected), avgMillis(drawNanos, numDrawn) };
+	}
+
+	/**
+	 * Clears the statistics
+	 */
+	public synchronized void resetStats() {
+		captureNanos = waitNanos = detectNanos = drawNanos = 0;
+		numCaptured = numDropped = numDetected = numDrawn = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		double[] ms = getStageMillis();
+		return String.format("frames: %d captured, %d dropped, %d detected; ms/frame: capture %.2f, wait %.2f, detect %.2f, draw %.2f",
+				numCaptured, numDropped, numDetected, ms[0], ms[1], ms[2], ms[3]);
+	}
+
+	private static double avgMillis(long nanos, int n) {
+		return n == 0 ? 0 : nanos / 1e6 / n;
+	}
+}
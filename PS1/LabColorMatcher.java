@@ -0,0 +1,101 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Perceptual color matching: a pixel matches a target when their CIELAB colors are within a
+ * Delta E (CIE76) threshold. Rather than converting every pixel, colors are quantized 5 bits per channel
+ * and a 32x32x32 bit table (4KB) of which quantized colors match is computed once per target and threshold,
+ * so matching a pixel is a single table probe. The tables for the last few targets are cached.
+ *
+ * @author Paige Harris and Cha Krupka, Dartmouth CS10, Spring 2022
+ */
+public class LabColorMatcher {
+	private final Map<Long, long[]> tables;                 // (target, threshold) -> match table, least recently used first
+
+	/**
+	 * @param cacheSize		how many targets' tables to keep
+	 */
+	public LabColorMatcher(final int cacheSize) {
+		tables = new LinkedHashMap<Long, long[]>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns the match table for the target and threshold: bit ((r>>3)<<10 | (g>>3)<<5 | b>>3) is set
+	 * when that quantized color is within maxDeltaE of the target
+	 * @param target		packed RGB target color
+	 * @param maxDeltaE		largest CIE76 Delta E that still matches
+	 */
+	public long[] getTable(int target, double maxDeltaE) {
+		long key = ((long) (target & 0xffffff) << 32) | Float.floatToIntBits((float) maxDeltaE);
+		long[] table = tables.get(key);
+		if (table == null) {
+			table = buildTable(target, maxDeltaE);
+			tables.put(key, table);
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the table index of a packed RGB color
+	 */
+	public static int index(int rgb) {
+		return ((rgb >> 9) & 0x7c00) | ((rgb >> 6) & 0x3e0) | ((rgb >> 3) & 0x1f);
+	}
+
+	/**
+	 * Tests a packed RGB color against a table from getTable
+	 */
+	public static boolean matches(long[] table, int rgb) {
+		int i = index(rgb);
+		return (table[i >>> 6] & (1L << i)) != 0;
+	}
+
+	/**
+	 * Computes which quantized colors (each taken at the middle of its cell) are within maxDeltaE of the target
+	 */
+	private static long[] buildTable(int target, double maxDeltaE) {
+		long[] table = new long[32768 / 64];
+		double[] t = new double[3], c = new double[3];
+		toLab(target, t);
+		double limit = maxDeltaE * maxDeltaE;
+		for (int i = 0; i < 32768; i++) {
+			int rgb = (((i >> 10) << 3) + 4) << 16 | ((((i >> 5) & 31) << 3) + 4) << 8 | (((i & 31) << 3) + 4);
+			toLab(rgb, c);
+			double dl = c[0] - t[0], da = c[1] - t[1], db = c[2] - t[2];
+			if (dl * dl + da * da + db * db <= limit) table[i >>> 6] |= 1L << i;
+		}
+		return table;
+	}
+
+	/**
+	 * Converts a packed sRGB color to CIELAB (D65 white)
+	 * @param lab	filled in with L*, a*, b*
+	 */
+	public static void toLab(int rgb, double[] lab) {
+		double r = linear((rgb >> 16) & 0xff), g = linear((rgb >> 8) & 0xff), b = linear(rgb & 0xff);
+		double x = (0.4124564 * r + 0.3575761 * g + 0.1804375 * b) / 0.95047;
+		double y = 0.2126729 * r + 0.7151522 * g + 0.0721750 * b;
+		double z = (0.0193339 * r + 0.1191920 * g + 0.9503041 * b) / 1.08883;
+		double fx = f(x), fy = f(y), fz = f(z);
+		lab[0] = 116 * fy - 16;
+		lab[1] = 500 * (fx - fy);
+		lab[2] = 200 * (fy - fz);
+	}
+
+	/**
+	 * Undoes the sRGB gamma of an 8-bit channel
+	 */
+	private static double linear(int channel) {
+		double v = channel / 255.0;
+		return v <= 0.04045 ? v / 12.92 : Math.pow((v + 0.055) / 1.055, 2.4);
+	}
+
+	private static double f(double t) {
+		return t > 216.0 / 24389 ? Math.cbrt(t) : (24389.0 / 27 * t + 16) / 116;
+	}
+}
@@ -0,0 +1,140 @@
+/**
+ * Erosion and dilation of a ColorMatchMask-style bitmask (bit y*width + x per pixel), for cleaning up the
+ * match mask before regions are grown: opening (erode, then dilate) removes specks and hairlines thinner than
+ * the kernel, and closing (dilate, then erode) fills pinholes and cracks.
+ * The kernel is a (2*radius+1)-pixel square, applied as radius passes of a 3x3 square, each of which is split
+ * into a horizontal and a vertical step. A step works on 64 pixels at once: a pixel's left/right neighbors are
+ * the mask shifted by one bit, and its up/down neighbors the mask shifted by width bits, with column and row
+ * masks keeping rows from leaking into each other. Pixels off the image count as matching for erosion
+ * (so regions aren't eaten away at the image border) and not matching for dilation.
+ *
+ * @author Paige Harris and Cha Krupka, Dartmouth CS10, Spring 2022
+ */
+public class MaskMorphology {
+	private int width, height;                              // image dimensions the column masks are for
+	private long[] firstColumn = new long[0];               // bits of the pixels at x = 0
+	private long[] lastColumn = new long[0];                // bits of the pixels at x = width-1
+	private long[] scratch = new long[0];                   // the in-between result of each pass
+
+	/**
+	 * Opens the mask in place: erodes, then dilates, each radius times
+	 * @param bits		the mask of a w by h image
+	 */
+	public void open(long[] bits, int w, int h, int radius) {
+		erode(bits, w, h, radius);
+		dilate(bits, w, h, radius);
+	}
+
+	/**
+	 * Closes the mask in place: dilates, then erodes, each radius times
+	 */
+	public void close(long[] bits, int w, int h, int radius) {
+		dilate(bits, w, h, radius);
+		erode(bits, w, h, radius);
+	}
+
+	/**
+	 * Erodes the mask in place: keeps only pixels whose whole (2*radius+1)-square neighborhood matches
+	 */
+	public void erode(long[] bits, int w, int h, int radius) {
+		if (w * h == 0) return;
+		prepare(w, h);
+		for (int k = 0; k < radius; k++) {
+			horizontal(bits, scratch, true);
+			vertical(scratch, bits, true);
+		}
+	}
+
+	/**
+	 * Dilates the mask in place: adds every pixel with a match within its (2*radius+1)-square neighborhood
+	 */
+	public void dilate(long[] bits, int w, int h, int radius) {
+		if (w * h == 0) return;
+		prepare(w, h);
+		for (int k = 0; k < radius; k++) {
+			horizontal(bits, scratch, false);
+			vertical(scratch, bits, false);
+		}
+	}
+
+	/**
+	 * Sizes the scratch space and column masks for a w by h image
+	 */
+	private void prepare(int w, int h) {
+		int words = (w * h + 63) >>> 6;
+		if (scratch.length < words) scratch = new long[words];
+		if (w == width && h == height) return;
+		width = w;
+		height = h;
+		firstColumn = new long[words];
+		lastColumn = new long[words];
+		for (int y = 0; y < h; y++) {
+			int first = y * w, last = y * w + w - 1;
+			firstColumn[first >>> 6] |= 1L << first;
+			lastColumn[last >>> 6] |= 1L << last;
+		}
+	}
+
+	/**
+	 * One horizontal step: each pixel and its left and right neighbors, ANDed (erode) or ORed (dilate)
+	 */
+	private void horizontal(long[] src, long[] dst, boolean erode) {
+		int words = (width * height + 63) >>> 6;
+		for (int j = 0; j < words; j++) {
+			long left = shifted(src, words, j, 1), right = shifted(src, words, j, -1);
+			if (erode) dst[j] = src[j] & (left | firstColumn[j]) & (right | lastColumn[j]);
+			else dst[j] = src[j] | (left & ~firstColumn[j]) | (right & ~lastColumn[j]);
+		}
+		clearTail(dst, words);
+	}
+
+	/**
+	 * One vertical step: each pixel and its neighbors above and below
+	 */
+	private void vertical(long[] src, long[] dst, boolean erode) {
+		int n = width * height, words = (n + 63) >>> 6;
+		for (int j = 0; j < words; j++) {
+			long up = shifted(src, words, j, width), down = shifted(src, words, j, -width);
+			long firstRow = range(j, 0, width), lastRow = range(j, n - width, n);
+			if (erode) dst[j] = src[j] & (up | firstRow) & (down | lastRow);
+			else dst[j] = src[j] | up | down;	// the shifts bring in zeros past the first and last rows
+		}
+		clearTail(dst, words);
+	}
+
+	/**
+	 * Returns word j of the bit string shifted by s bits towards higher indices (negative s: towards lower),
+	 * so bit i of the result is bit i-s of the original; bits shifted in from outside are 0
+	 */
+	private static long shifted(long[] bits, int words, int j, int s) {
+		if (s >= 0) {
+			int from = j - (s >>> 6), by = s & 63;
+			long word = from >= 0 ? bits[from] << by : 0;
+			if (by != 0 && from - 1 >= 0) word |= bits[from - 1] >>> (64 - by);
+			return word;
+		}
+		int from = j + (-s >>> 6), by = -s & 63;
+		long word = from < words ? bits[from] >>> by : 0;
+		if (by != 0 && from + 1 < words) word |= bits[from + 1] << (64 - by);
+		return word;
+	}
+
+	/**
+	 * Returns the bits of word j that are in the range lo to hi-1
+	 */
+	private static long range(int j, int lo, int hi) {
+		int base = j << 6;
+		int from = Math.max(lo, base) - base, to = Math.min(hi, base + 64) - base;
+		if (from >= to) return 0;
+		long upTo = to == 64 ? -1L : (1L << to) - 1;
+		return upTo & (-1L << from);
+	}
+
+	/**
+	 * Clears the bits past the last pixel, so they never shift into the image
+	 */
+	private void clearTail(long[] bits, int words) {
+		int n = width * height;
+		if ((n & 63) != 0) bits[words - 1] &= (1L << n) - 1;
+	}
+}
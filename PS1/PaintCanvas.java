@@ -0,0 +1,71 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * An accumulating painting: remembers which pixels have been painted in a bitset and
+ * writes each pixel into the image only the first time a brush covers it,
+ * so adding a brush stroke costs time proportional to the brush, not to everything painted so far.
+ *
+ * @author Paige Harris and Cha Krupka, Dartmouth CS10, Spring 2022
+ */
+public class PaintCanvas {
+	private int width, height;                              // size of the painting
+	private BufferedImage image;                            // the painting itself
+	private int[] data;                                     // image's pixels, pixel (x,y) at y*width + x
+	private long[] painted;                                 // one bit per pixel, set once the pixel has been painted
+	private int numPainted = 0;                             // how many pixels have been painted
+
+	public PaintCanvas(int width, int height) {
+		this.width = width;
+		this.height = height;
+		image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		painted = new long[(width * height + 63) >>> 6];
+	}
+
+	public BufferedImage getImage() {
+		return image;
+	}
+
+	public int getNumPainted() {
+		return numPainted;
+	}
+
+	/**
+	 * Returns whether pixel (x,y) has been painted
+	 */
+	public boolean isPainted(int x, int y) {
+		int i = y * width + x;
+		return (painted[i >>> 6] & (1L << i)) != 0;
+	}
+
+	/**
+	 * Erases the painting, keeping its storage
+	 */
+	public void clear() {
+		Arrays.fill(painted, 0L);
+		Arrays.fill(data, 0);
+		numPainted = 0;
+	}
+
+	/**
+	 * Paints region r's spans in the color, touching only pixels that weren't already painted
+	 * @param rgb	packed ARGB color
+	 */
+	public void paint(RegionSpans spans, int r, int rgb) {
+		for (int k = spans.getSpanStart(r); k < spans.getSpanEnd(r); k++) {
+			int y = spans.getY(k);
+			if (y >= height) continue;
+			int i0 = y * width + spans.getXStart(k), i1 = y * width + Math.min(width, spans.getXEnd(k));
+			for (int i = i0; i < i1; i++) {
+				long bit = 1L << i;
+				if ((painted[i >>> 6] & bit) == 0) {
+					painted[i >>> 6] |= bit;
+					data[i] = rgb;
+					numPainted++;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,75 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Compares RegionFinder's coarse-to-fine pyramid search against the full scan on an image:
+ * how many of the full scan's regions and pixels the pyramid finds, and how long each takes.
+ *
+ * Usage: java PyramidReport image r g b [factor ...]
+ *
+ * @author Paige Harris and Cha Krupka, Dartmouth CS10, Spring 2022
+ */
+public class PyramidReport {
+	private static final int runs = 10;                     // timed runs of each search, after as many warm-up runs
+
+	/**
+	 * Returns a one-line comparison of the pyramid search at the factor against the full scan
+	 */
+	public static String compare(BufferedImage image, Color target, int factor) {
+		RegionFinder full = new RegionFinder(image), pyramid = new RegionFinder(image);
+		for (int i = 0; i < runs; i++) {
+			full.findRegions(target);
+			pyramid.findRegionsPyramid(target, factor);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < runs; i++) full.findRegions(target);
+		double fullMillis = (System.nanoTime() - start) / 1e6 / runs;
+		start = System.nanoTime();
+		for (int i = 0; i < runs; i++) pyramid.findRegionsPyramid(target, factor);
+		double pyramidMillis = (System.nanoTime() - start) / 1e6 / runs;
+
+		// Pyramid regions are always complete full-scan regions, so mark their pixels and see which full regions are covered
+		int w = image.getWidth();
+		boolean[] found = new boolean[w * image.getHeight()];
+		RegionSpans spans = pyramid.getSpans();
+		for (int r = 0; r < spans.getNumRegions(); r++) {
+			for (int k = spans.getSpanStart(r); k < spans.getSpanEnd(r); k++) {
+				for (int x = spans.getXStart(k); x < spans.getXEnd(k); x++) found[spans.getY(k) * w + x] = true;
+			}
+		}
+		spans = full.getSpans();
+		int regionsFound = 0, pixels = 0, pixelsFound = 0;
+		for (int r = 0; r < spans.getNumRegions(); r++) {
+			int k = spans.getSpanStart(r);
+			if (found[spans.getY(k) * w + spans.getXStart(k)]) {
+				regionsFound++;
+				pixelsFound += spans.getPixelCount(r);
+			}
+			pixels += spans.getPixelCount(r);
+		}
+		boolean largestFound = full.getLargestIndex() < 0 || (pyramid.getLargestIndex() >= 0
+				&& pyramid.getRegionSize(pyramid.getLargestIndex()) == full.getRegionSize(full.getLargestIndex()));
+		return String.format("1/%d: %d of %d regions, %.1f%% of region pixels, largest %s; %.2f ms vs %.2f ms full scan",
+				factor, regionsFound, full.getNumRegions(), pixels == 0 ? 100.0 : 100.0 * pixelsFound / pixels,
+				largestFound ? "found" : "missed", pyramidMillis, fullMillis);
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 4) {
+			System.err.println("usage: java PyramidReport image r g b [factor ...]");
+			System.exit(1);
+		}
+		BufferedImage image = ImageIO.read(new File(args[0]));
+		Color target = new Color(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+		if (args.length == 4) {
+			System.out.println(compare(image, target, 4));
+			System.out.println(compare(image, target, 8));
+		}
+		for (int a = 4; a < args.length; a++) {
+			System.out.println(compare(image, target, Integer.parseInt(args[a])));
+		}
+	}
+}
@@ -0,0 +1,339 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Headless batch region analysis: streams a directory of images, or a raw dump of frames, through a pool of
+ * RegionFinder workers and writes each frame's region statistics to CSV (one row per region, or one with an empty region
+ * and statistics for a frame with none) or JSON (one line per frame).
+ * At most a fixed number of frames are in memory at once; results are written in frame order.
+ *
+ * Usage: java RegionBatch input r g b [options]
+ *   input				a directory of images, or a raw dump of 8-bit RGB frames back to back (needs -size)
+ *   r g b				target color
+ * Options:
+ *   -size WxH			frame size of a raw dump
+ *   -out file			where to write the statistics; .json for JSON, otherwise CSV (default: standard output, CSV)
+ *   -threads n			number of workers (default: number of processors)
+ *   -maxColorDiff d	color match threshold
+ *   -minRegion m		smallest region to report
+ *   -maxDeltaE e		match by CIELAB Delta E within e instead of by RGB distance
+ *
+ * @author Paige Harris and Cha Krupka, Dartmouth CS10, Spring 2022
+ */
+public class RegionBatch {
+	/**
+	 * A frame on its way through the workers: either an image file for the worker to decode, or an image
+	 * already read from a raw dump; index is -1 for the end-of-input marker
+	 */
+	private static class Frame {
+		int index = -1;
+		String name;
+		File file;
+		BufferedImage image;
+		String result;
+		String error;		// why the frame couldn't be analyzed, null if it was
+	}
+
+	private final File input;                               // directory or raw dump
+	private final Color target;                             // color to find
+	private int rawWidth, rawHeight;                        // frame size, for raw dumps
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int maxColorDiff = -1, minRegion = -1;          // finder settings, -1 to keep RegionFinder's defaults
+	private double maxDeltaE = 0;                           // if positive, match perceptually
+	private boolean json = false;                           // output format
+
+	private BlockingQueue<Frame> toWorkers;                 // frames read but not yet analyzed
+	private Semaphore inFlight;                             // limits how many frames are in memory
+	private final Map<Integer, Frame> done = new HashMap<Integer, Frame>();   // analyzed frames waiting for their turn to be written
+	private int numFrames = -1;                             // total number of frames, once the reader knows
+	private int numFailed = 0;                              // frames that couldn't be read or analyzed (plus a failed raw read)
+
+	public RegionBatch(File input, Color target) {
+		this.input = input;
+		this.target = target;
+	}
+
+	/**
+	 * Runs the batch, writing the statistics to out; frames that fail are reported and skipped.
+	 * If writing fails, the reader and workers are interrupted, so they don't keep going (or keep the JVM up).
+	 * @return how many frames were analyzed
+	 */
+	public int run(Writer out) throws IOException, InterruptedException {
+		int capacity = 2 * threads;
+		toWorkers = new ArrayBlockingQueue<Frame>(capacity);
+		inFlight = new Semaphore(capacity + threads);
+
+		ArrayList<Thread> started = new ArrayList<Thread>();
+		Thread reader = new Thread(new Runnable() {
+			public void run() {
+				read();
+			}
+		}, "reader");
+		reader.setDaemon(true);
+		started.add(reader);
+		for (int t = 0; t < threads; t++) {
+			Thread worker = new Thread(new Runnable() {
+				public void run() {
+					work();
+				}
+			}, "worker-" + t);
+			worker.setDaemon(true);
+			started.add(worker);
+		}
+		for (Thread thread : started) thread.start();
+
+		boolean finished = false;
+		try {
+			// Write the results in frame order, as they come in
+			if (!json) out.write("frame,name,region,pixels,minX,minY,maxX,maxY,centroidX,centroidY,avgR,avgG,avgB\n");
+			long start = System.nanoTime();
+			int next = 0, failed = 0;
+			while (true) {
+				Frame frame;
+				synchronized (done) {
+					while (!done.containsKey(next) && (numFrames < 0 || next < numFrames)) done.wait();
+					if (numFrames >= 0 && next >= numFrames) break;
+					frame = done.remove(next);
+					if (frame.error != null) numFailed++;
+				}
+				if (frame.error != null) {
+					System.err.println("couldn't analyze " + frame.name + ": " + frame.error);
+					failed++;
+				}
+				else out.write(frame.result);
+				inFlight.release();
+				next++;
+				if (next % 100 == 0) report(next, start);
+			}
+			out.flush();
+			report(next, start);
+			finished = true;
+			return next - failed;
+		}
+		finally {
+			if (!finished) {
+				for (Thread thread : started) thread.interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Returns how many frames (or raw reads) failed in the last run
+	 */
+	public int getNumFailed() {
+		synchronized (done) {
+			return numFailed;
+		}
+	}
+
+	/**
+	 * Reader: queues the image files for the workers to decode, or loads raw frames one at a time,
+	 * waiting whenever too many are in flight
+	 */
+	private void read() {
+		int index = 0;
+		try {
+			if (input.isDirectory()) {
+				File[] files = input.listFiles();
+				Arrays.sort(files);
+				for (File file : files) {
+					String name = file.getName().toLowerCase();
+					if (!(name.endsWith(".png") || name.endsWith(".jpg") || name.endsWith(".jpeg")
+							|| name.endsWith(".bmp") || name.endsWith(".gif"))) continue;
+					inFlight.acquire();
+					queue(index++, file.getName(), file, null);
+				}
+			}
+			else {
+				if (rawWidth <= 0 || rawHeight <= 0) throw new IOException("raw dump needs -size WxH");
+				DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(input), 1 << 20));
+				byte[] bytes = new byte[3 * rawWidth * rawHeight];
+				try {
+					while (true) {
+						try {
+							in.readFully(bytes);
+						}
+						catch (EOFException e) {
+							break;
+						}
+						inFlight.acquire();
+						BufferedImage image = new BufferedImage(rawWidth, rawHeight, BufferedImage.TYPE_INT_RGB);
+						int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+						for (int i = 0, b = 0; i < data.length; i++, b += 3) {
+							data[i] = ((bytes[b] & 0xff) << 16) | ((bytes[b + 1] & 0xff) << 8) | (bytes[b + 2] & 0xff);
+						}
+						queue(index, input.getName() + "#" + index, null, image);
+						index++;
+					}
+				}
+				finally {
+					in.close();
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (Exception e) {
+			System.err.println("reading stopped: " + e);
+			synchronized (done) {
+				numFailed++;
+			}
+		}
+		synchronized (done) {
+			numFrames = index;
+			done.notifyAll();
+		}
+		// Tell the workers there's no more
+		try {
+			for (int t = 0; t < threads; t++) toWorkers.put(new Frame());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void queue(int index, String name, File file, BufferedImage image) throws InterruptedException {
+		Frame frame = new Frame();
+		frame.index = index;
+		frame.name = name;
+		frame.file = file;
+		frame.image = image;
+		toWorkers.put(frame);
+	}
+
+	/**
+	 * Worker: decodes and analyzes frames with its own RegionFinder until the end-of-input marker.
+	 * A frame that fails (even with an Error, such as running out of memory) is passed on with its error,
+	 * so the writer doesn't wait for it forever.
+	 */
+	private void work() {
+		RegionFinder finder = newFinder();
+		StringBuilder text = new StringBuilder();
+		try {
+			while (true) {
+				Frame frame = toWorkers.take();
+				if (frame.index < 0) return;
+				try {
+					BufferedImage image = frame.image != null ? frame.image : ImageIO.read(frame.file);
+					if (image == null) throw new IOException("not a readable image");
+					finder.setImage(image);
+					finder.labelRegions(target);
+					text.setLength(0);
+					if (json) formatJson(frame, finder.getLabeler().getStats(), text);
+					else formatCsv(frame, finder.getLabeler().getStats(), text);
+					frame.result = text.toString();
+				}
+				catch (Throwable e) {
+					frame.error = e.toString();
+					finder = newFinder();	// in case it was left half-updated
+				}
+				frame.image = null;	// done with the pixels
+				synchronized (done) {
+					done.put(frame.index, frame);
+					done.notifyAll();
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			// shutting down
+		}
+	}
+
+	private RegionFinder newFinder() {
+		RegionFinder finder = new RegionFinder();
+		if (maxColorDiff >= 0) finder.setMaxColorDiff(maxColorDiff);
+		if (minRegion >= 0) finder.setMinRegion(minRegion);
+		finder.setMaxDeltaE(maxDeltaE);
+		return finder;
+	}
+
+	private static void formatCsv(Frame frame, RegionStats stats, StringBuilder text) {
+		if (stats.size() == 0) {	// still a row, so the frame shows up
+			text.append(frame.index).append(',').append(csvField(frame.name)).append(",,,,,,,,,,,\n");
+		}
+		for (int r = 0; r < stats.size(); r++) {
+			text.append(frame.index).append(',').append(csvField(frame.name)).append(',').append(r).append(',')
+				.append(stats.getCount(r)).append(',')
+				.append(stats.getMinX(r)).append(',').append(stats.getMinY(r)).append(',')
+				.append(stats.getMaxX(r)).append(',').append(stats.getMaxY(r)).append(',')
+				.append(String.format(Locale.ROOT, "%.2f,%.2f", stats.getCentroidX(r), stats.getCentroidY(r))).append(',')
+				.append(stats.getColorSum(r, 0) / stats.getCount(r)).append(',')
+				.append(stats.getColorSum(r, 1) / stats.getCount(r)).append(',')
+				.append(stats.getColorSum(r, 2) / stats.getCount(r)).append('\n');
+		}
+	}
+
+	/**
+	 * Quotes the text for CSV, if needed
+	 */
+	private static String csvField(String text) {
+		if (text.indexOf(',') < 0 && text.indexOf('"') < 0) return text;
+		return "\"" + text.replace("\"", "\"\"") + "\"";
+	}
+
+	private static void formatJson(Frame frame, RegionStats stats, StringBuilder text) {
+		text.append("{\"frame\":").append(frame.index).append(",\"name\":\"")
+			.append(frame.name.replace("\\", "\\\\").replace("\"", "\\\"")).append("\",\"regions\":[");
+		for (int r = 0; r < stats.size(); r++) {
+			if (r > 0) text.append(',');
+			text.append("{\"pixels\":").append(stats.getCount(r))
+				.append(",\"bounds\":[").append(stats.getMinX(r)).append(',').append(stats.getMinY(r)).append(',')
+				.append(stats.getMaxX(r)).append(',').append(stats.getMaxY(r)).append(']')
+				.append(String.format(Locale.ROOT, ",\"centroid\":[%.2f,%.2f]", stats.getCentroidX(r), stats.getCentroidY(r)))
+				.append(",\"color\":[").append(stats.getColorSum(r, 0) / stats.getCount(r)).append(',')
+				.append(stats.getColorSum(r, 1) / stats.getCount(r)).append(',')
+				.append(stats.getColorSum(r, 2) / stats.getCount(r)).append("]}");
+		}
+		text.append("]}\n");
+	}
+
+	private static void report(int frames, long start) {
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.err.printf("%d frames in %.1f s: %.1f frames/s%n", frames, seconds, seconds > 0 ? frames / seconds : 0.0);
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 4) {
+			System.err.println("usage: java RegionBatch input r g b [-size WxH] [-out file] [-threads n] [-maxColorDiff d] [-minRegion m] [-maxDeltaE e]");
+			System.exit(1);
+		}
+		RegionBatch batch = new RegionBatch(new File(args[0]),
+				new Color(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3])));
+		String outName = null;
+		for (int a = 4; a + 1 < args.length; a += 2) {
+			String value = args[a + 1];
+			if (args[a].equals("-size")) {
+				String[] wh = value.split("x");
+				batch.rawWidth = Integer.parseInt(wh[0]);
+				batch.rawHeight = Integer.parseInt(wh[1]);
+			}
+			else if (args[a].equals("-out")) outName = value;
+			else if (args[a].equals("-threads")) batch.threads = Math.max(1, Integer.parseInt(value));
+			else if (args[a].equals("-maxColorDiff")) batch.maxColorDiff = Integer.parseInt(value);
+			else if (args[a].equals("-minRegion")) batch.minRegion = Integer.parseInt(value);
+			else if (args[a].equals("-maxDeltaE")) batch.maxDeltaE = Double.parseDouble(value);
+			else System.err.println("unexpected option " + args[a]);
+		}
+		batch.json = outName != null && outName.toLowerCase().endsWith(".json");
+		Writer out = new BufferedWriter(outName != null ? new FileWriter(outName) : new OutputStreamWriter(System.out));
+		try {
+			batch.run(out);
+		}
+		finally {
+			out.close();
+		}
+		if (batch.getNumFailed() > 0) {
+			System.err.println(batch.getNumFailed() + " failed");
+			System.exit(1);
+		}
+	}
+}
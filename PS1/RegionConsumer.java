@@ -0,0 +1,16 @@
+/**
+ * Receives regions one at a time, as RegionFinder's streaming search completes them, instead of the finder
+ * keeping them all. The pixels are only valid during the call (the finder reuses the array), so a consumer
+ * has to copy whatever it wants to keep.
+ *
+ * @author Paige Harris and Cha Krupka, Dartmouth CS10, Spring 2022
+ */
+public interface RegionConsumer {
+	/**
+	 * Takes a completed region
+	 * @param pixels	the region's pixel indices (y*width + x) are pixels[from..to)
+	 * @param width		image width, to turn indices into coordinates
+	 * @return whether to keep searching; false stops the search right away
+	 */
+	public boolean accept(int[] pixels, int from, int to, int width);
+}
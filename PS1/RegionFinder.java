@@ -1,6 +1,7 @@
 import java.awt.*;
 import java.awt.image.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Region growing algorithm: finds and holds regions in an image.
@@ -14,15 +15,49 @@ import java.util.*;
  * Finished findRegions(),  colorMatch(), largestRegion(), and recolorImage() methods
  */
 public class RegionFinder {
-	private static final int maxColorDiff = 20;                // how similar a pixel color must be to the target color, to belong to a region
-	private static final int minRegion = 50;                // how many points in a region to be worth considering
+	private int maxColorDiff = 20;                          // how similar a pixel color must be to the target color, to belong to a region
+	private int minRegion = 50;                             // how many points in a region to be worth considering
+	private double maxDeltaE = 0;                           // if positive, match by CIELAB Delta E instead of maxColorDiff
+	private LabColorMatcher labMatcher = new LabColorMatcher(4);   // Delta E lookup tables of recent targets
 	private Color trackColor=null;		 	// point-tracking target color
 
 	private BufferedImage image;                            // the image in which to find regions
 	private BufferedImage recoloredImage;                   // the image with identified regions recolored
+	private BufferedImage[] recolorBuffers = new BufferedImage[2];  // recoloredImage alternates between these
+	private int recolorBack = 0;                            // which buffer the next recolorImage writes
 
-	private ArrayList<ArrayList<Point>> regions;            // a region is a list of points
-	// so the identified regions are in a list of lists of points
+	// Flood fill buffers, kept across frames so that steady-state frames allocate nothing
+	private int width, height;                              // dimensions the buffers are currently sized for
+	private int[] pixels;                                   // packed RGB of the image, when it can't be read in place
+	private ColorMatchMask mask = new ColorMatchMask();     // which pixels match the target color, built once per frame
+	private long[] unclaimed;                               // matching pixels not yet claimed by a region, one bit each
+	private int[] regionPixels;                             // pixel indices (y*width + x) of all kept regions, back to back;
+	// also serves as the flood fill work queue for the region being grown
+	private int[] regionStart = new int[16];                // regionStart[r] is where region r begins in regionPixels
+	private int numRegions = 0;                             // how many regions were kept by the last findRegions
+	private int largest = -1;                               // index of the largest kept region, -1 if none
+	private ArrayList<Point> largestPoints;                 // largest region as points, built on demand
+
+	private RegionLabeler labeler = new RegionLabeler();    // union-find labeling mode
+	private boolean labeled = false;                        // whether the last search was labelRegions rather than findRegions
+	private RegionFinder coarse;                            // for the pyramid search's downsampled pass
+	private BufferedImage coarseImage;                      // the downsampled frame
+	private static final int tileSize = 64;                 // the pyramid search matches (and reads, if need be) a tile at a time
+	private boolean[] tileMatched;                          // which tiles of the mask the pyramid search has filled in this frame
+	private TargetClassifier classifier;                    // for multi-target searches, built for classifierTargets
+	private Map<Color, Integer> classifierTargets;          // the targets and thresholds the classifier was built for
+	private byte[] classes;                                 // each pixel's target in the last multi-target search
+	private RegionSpans spans = new RegionSpans();          // the last search's regions as runs of pixels, built on demand
+	private boolean spansValid = false;                     // whether spans is up to date with the last search
+	private RegionSpans oneSpans = new RegionSpans();       // just one of the last search's regions as runs of pixels
+	private int oneSpansRegion = -1;                        // which region oneSpans holds, -1 if none of the last search's
+	private int openRadius = 0, closeRadius = 0;            // how much to open and close the match mask, 0 for not at all
+	private MaskMorphology morphology = new MaskMorphology();   // does the opening and closing
+	private ColorBucketIndex colorIndex;                    // the pixels of indexedImage by color, for repeated queries
+	private BufferedImage indexedImage;                     // the image colorIndex was built for, null if none
+	private int[] indexedPixels;                            // indexedImage's pixels, as indexColors read them
+	private int[] indexCopy;                                // where indexColors copies images that aren't read in place
+	private StageTimer timer;                               // times the stages of findRegions and recolorImage, null when off
 
 	public RegionFinder() {
 		this.image = null;
@@ -44,97 +79,704 @@ public class RegionFinder {
 		return recoloredImage;
 	}
 
+	public int getMaxColorDiff() {
+		return maxColorDiff;
+	}
+
+	/**
+	 * Sets how far (Euclidean RGB distance) a pixel color may be from the target color to belong to a region
+	 */
+	public void setMaxColorDiff(int maxColorDiff) {
+		this.maxColorDiff = maxColorDiff;
+	}
+
+	public double getMaxDeltaE() {
+		return maxDeltaE;
+	}
+
+	/**
+	 * Switches to perceptual matching: a pixel belongs to a region if its CIELAB color is within maxDeltaE
+	 * (CIE76) of the target's, e.g., 10 for fairly similar colors. 0 goes back to RGB matching by maxColorDiff.
+	 */
+	public void setMaxDeltaE(double maxDeltaE) {
+		this.maxDeltaE = maxDeltaE;
+	}
+
+	public int getMinRegion() {
+		return minRegion;
+	}
+
+	/**
+	 * Sets how many pixels a region needs to be kept
+	 */
+	public void setMinRegion(int minRegion) {
+		this.minRegion = minRegion;
+	}
+
+	public int getOpenRadius() {
+		return openRadius;
+	}
+
+	/**
+	 * Sets how much to open the match mask before growing regions: erode and then dilate it with a
+	 * (2*radius+1)-pixel square, wiping out specks and threads thinner than that (e.g., webcam noise) so they
+	 * never get grown. Regions come out with their corners and edges smoothed by as much. 0 turns it off.
+	 * Applies to findRegions and labelRegions, but not findRegionsPyramid.
+	 */
+	public void setOpenRadius(int openRadius) {
+		this.openRadius = openRadius;
+	}
+
+	public int getCloseRadius() {
+		return closeRadius;
+	}
+
+	/**
+	 * Sets how much to close the match mask (after opening it, if that's on): dilate and then erode it with a
+	 * (2*radius+1)-pixel square, filling holes and gaps narrower than that. 0 turns it off.
+	 */
+	public void setCloseRadius(int closeRadius) {
+		this.closeRadius = closeRadius;
+	}
+
+	public StageTimer getTimer() {
+		return timer;
+	}
+
+	/**
+	 * Sets where findRegions and recolorImage record how long their stages take ("match", "grow", "spans", "recolor");
+	 * null to stop timing
+	 */
+	public void setTimer(StageTimer timer) {
+		this.timer = timer;
+	}
+
+	/**
+	 * Returns the color match mask of the last search
+	 */
+	public ColorMatchMask getMask() {
+		return mask;
+	}
+
+	/**
+	 * Returns how many regions were found by the last findRegions
+	 */
+	public int getNumRegions() {
+		return labeled ? labeler.getNumRegions() : numRegions;
+	}
+
+	/**
+	 * Returns how many pixels are in region r of the last findRegions
+	 * @param r		region index, 0 to getNumRegions()-1
+	 */
+	public int getRegionSize(int r) {
+		return labeled ? labeler.getStats().getCount(r) : regionStart[r+1] - regionStart[r];
+	}
+
+	/**
+	 * Returns which region of the last search is the largest, -1 if there are none
+	 */
+	public int getLargestIndex() {
+		return labeled ? labeler.getLargest() : largest;
+	}
+
+	/**
+	 * Returns the regions of the last search as runs of pixels (numbered the same way),
+	 * encoding them the first time they are asked for
+	 */
+	public RegionSpans getSpans() {
+		if (!spansValid) {
+			if (labeled) spans.encodeLabels(labeler.getLabels(), width, height, labeler.getNumRegions());
+			else spans.encodePixels(regionPixels, regionStart, numRegions, width);
+			spansValid = true;
+		}
+		return spans;
+	}
+
+	/**
+	 * Returns just region r of the last search as runs of pixels, as region 0 of the result, encoding only it
+	 * (by its bounding box, not by sorting its pixels), so that painting one region (say, the brush) takes time
+	 * for that region's pixels, however many others were found.
+	 * The result is reused by the next call.
+	 */
+	public RegionSpans getSpans(int r) {
+		if (oneSpansRegion != r) {
+			if (labeled) {
+				RegionStats stats = labeler.getStats();
+				oneSpans.encodeLabel(labeler.getLabels(), width, r,
+						stats.getMinX(r), stats.getMinY(r), stats.getMaxX(r), stats.getMaxY(r));
+			}
+			else {
+				oneSpans.encodeRegion(regionPixels, regionStart[r], regionStart[r + 1], width);
+			}
+			oneSpansRegion = r;
+		}
+		return oneSpans;
+	}
+
+	/**
+	 * Returns the labeler holding the label image and region statistics of the last labelRegions
+	 */
+	public RegionLabeler getLabeler() {
+		return labeler;
+	}
+
 	/**
 	 * Loops over pixels to find pixels within certain scope of color accuracy, then loops over neighboring
 	 * pixels to create a region of correct color pixels, adding the region to the list of regions if the
 	 * region meets the size criteria.
+	 * The colors are matched once up front into a bitmask; growing then works on a copy of the mask,
+	 * clearing each pixel's bit as it is claimed, with a primitive work queue. All of these are reused
+	 * from frame to frame.
 	 * @param targetColor color to be searched for in image
 	 */
 	public void findRegions(Color targetColor) {
-		regions = new ArrayList<ArrayList<Point>>();
-		BufferedImage visited = new BufferedImage
-				(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
-
-		for (int y = 0; y < image.getHeight(); y++) {		// loop over all pixels
-			for (int x = 0; x < image.getWidth(); x++) {
-				if (visited.getRGB(x, y) == 0) {			// if pixel isn't visited, continue
-
-					if (colorMatch(new Color(image.getRGB(x, y)), targetColor)) {	// compared color to targetColor
-						ArrayList<Point> region = new ArrayList<Point>();	// create new region
-						ArrayList<Point> toVisit = new ArrayList<Point>();	// create a list of pixels to visit
-
-						toVisit.add(new Point(x, y));
-
-						while (!toVisit.isEmpty()) {		// while there are pixels to visit, continue loop
-							Point removePoint = toVisit.remove(0);	// remove current pixel
-
-							if (visited.getRGB(removePoint.x, removePoint.y) != 1) {
-								region.add(new Point(removePoint.x, removePoint.y)); // if not visited, add to region
-								visited.setRGB(removePoint.x, removePoint.y, 1); // then set visited
-
-								// loop over neighboring pixels
-								for (int cy = Math.max(0, removePoint.y - 1); cy <= Math.min(image.getHeight()-1,
-										removePoint.y + 1); cy++) {
-									for (int cx = Math.max(0, removePoint.x - 1); cx <= Math.min(image.getWidth()-1,
-											removePoint.x + 1); cx++) {
-										// add neighboring pixels to toVisit if colors are correct
-										if (colorMatch(new Color(image.getRGB(cx, cy)), targetColor)) {
-											toVisit.add(new Point(cx, cy));
-										}
-									}
-								}
-							}
-						}
-						if (region.size() >= minRegion) {	// add region to regions if meets size requirements
-							regions.add(region);
+		StageTimer t = timer;
+		long start = t != null ? StageTimer.start() : 0;
+		int[] rgb = readPixels();
+		buildMask(rgb, width, height, targetColor, false);
+		if (t != null) start = t.record("match", start);
+		growRegions(width, height, null, null);
+		if (t != null) t.record("grow", start);
+	}
+
+	/**
+	 * Streaming version of findRegions: hands each region to the consumer as soon as it is grown, instead of
+	 * keeping it, so only the region being grown is held here (use TopRegions to keep just the largest few).
+	 * Stops as soon as the consumer returns false. Afterwards this finder itself holds no regions.
+	 * @param targetColor color to be searched for in image
+	 * @param consumer    takes each region of at least minRegion pixels, in raster order of their first pixels
+	 */
+	public void findRegions(Color targetColor, RegionConsumer consumer) {
+		int[] rgb = readPixels();
+		buildMask(rgb, width, height, targetColor, false);
+		growRegions(width, height, null, consumer);
+	}
+
+	/**
+	 * Same as findRegions, but only looks at the pixels inside the window, e.g., around where the
+	 * region was in the previous frame. Regions are cut off at the window's edges.
+	 * @param targetColor color to be searched for in image
+	 * @param window      part of the image to search (clipped to the image)
+	 */
+	public void findRegions(Color targetColor, Rectangle window) {
+		ensureBuffers();
+		int x0 = Math.max(0, window.x), y0 = Math.max(0, window.y);
+		int ww = Math.min(width, window.x + window.width) - x0, wh = Math.min(height, window.y + window.height) - y0;
+		if (ww <= 0 || wh <= 0) {	// nothing of the image is in the window
+			ww = 0; wh = 0;
+		}
+		StageTimer t = timer;
+		long start = t != null ? StageTimer.start() : 0;
+		int[] rgb = readWindow(x0, y0, ww, wh);
+		buildMask(rgb, ww, wh, targetColor, false);
+		if (t != null) start = t.record("match", start);
+		growRegions(ww, wh, null, null);
+
+		// move the kept regions' pixels from window to image coordinates
+		int end = numRegions > 0 ? regionStart[numRegions] : 0;
+		for (int k = 0; k < end; k++) {
+			int p = regionPixels[k];
+			regionPixels[k] = (y0 + p / ww) * width + x0 + p % ww;
+		}
+		if (t != null) t.record("grow", start);
+	}
+
+	/**
+	 * Where growRegions starts regions, for searches that don't simply start from every matching pixel in turn
+	 */
+	private interface Seeds {
+		/**
+		 * Returns the next pixel to grow a region from, one that matches and isn't yet claimed, or -1 if there are no more
+		 */
+		public int next();
+
+		/**
+		 * Called as growing reaches pixel (x,y), before the mask is looked at around it, so the mask can be filled in lazily
+		 */
+		public void reached(int x, int y);
+	}
+
+	/**
+	 * Flood fills regions of the match mask, which covers a w by h image
+	 * @param seeds		if not null, where to start the regions, with the mask in unclaimed filled in as they reach it;
+	 *                  if null, regions are started from every pixel of mask in turn
+	 * @param consumer	if not null, gets the regions instead of them being kept
+	 */
+	private void growRegions(int w, int h, Seeds seeds, RegionConsumer consumer) {
+		long[] free = unclaimed;
+		int words = (w * h + 63) >>> 6;
+		spansValid = false;
+		oneSpansRegion = -1;
+		if (seeds == null) System.arraycopy(mask.getBits(), 0, free, 0, words);
+		labeled = false;
+		numRegions = 0;
+		largest = -1;
+		largestPoints = null;
+		int end = 0;                                        // end of the kept regions in regionPixels
+		int word = 0;                                       // where the scan for unclaimed matching pixels is
+
+		while (true) {
+			int i;
+			if (seeds == null) {	// loop over unclaimed matching pixels, 64 at a time
+				while (word < words && free[word] == 0) word++;
+				if (word == words) break;
+				i = (word << 6) + Long.numberOfTrailingZeros(free[word]);
+			}
+			else {
+				i = seeds.next();
+				if (i < 0) break;
+			}
+
+			// grow a new region from i, using regionPixels[end..tail) as the queue
+			int head = end, tail = end;
+			free[i >>> 6] &= ~(1L << i);
+			regionPixels[tail++] = i;
+			while (head < tail) {
+				int p = regionPixels[head++];
+				int px = p % w, py = p / w;
+				if (seeds != null) seeds.reached(px, py);
+				// loop over neighboring pixels, queueing the unvisited ones of the correct color
+				for (int cy = Math.max(0, py - 1); cy <= Math.min(h - 1, py + 1); cy++) {
+					for (int cx = Math.max(0, px - 1); cx <= Math.min(w - 1, px + 1); cx++) {
+						int q = cy * w + cx;
+						if ((free[q >>> 6] & (1L << q)) != 0) {
+							free[q >>> 6] &= ~(1L << q);
+							regionPixels[tail++] = q;
 						}
 					}
 				}
 			}
+
+			if (tail - end >= minRegion && consumer != null) {	// hand it off; its slots get reused
+				if (!consumer.accept(regionPixels, end, tail, w)) return;
+			}
+			else if (tail - end >= minRegion) {	// keep region if meets size requirements; otherwise its slots get reused
+				if (numRegions + 2 > regionStart.length) regionStart = Arrays.copyOf(regionStart, regionStart.length * 2);
+				regionStart[numRegions] = end;
+				regionStart[numRegions + 1] = tail;
+				if (largest < 0 || tail - end > getRegionSize(largest)) largest = numRegions;
+				numRegions++;
+				end = tail;
+			}
+		}
+	}
+
+	/**
+	 * Coarse-to-fine version of findRegions for high-resolution frames: first finds candidate regions in a copy of
+	 * the image downsampled by the factor (one pixel per factor by factor cell, with minRegion scaled down to match),
+	 * then grows regions at full resolution only from pixels in windows around the candidates.
+	 * Growing isn't limited to the windows, so every region found is complete and exactly as findRegions would
+	 * find it; regions too thin or small to show up at the coarse level can be missed.
+	 * Regions are numbered by window rather than in raster order.
+	 * @param targetColor color to be searched for in image
+	 * @param factor      how much to downsample by, e.g., 4 or 8
+	 */
+	public void findRegionsPyramid(Color targetColor, int factor) {
+		if (factor < 1) throw new IllegalArgumentException("factor must be at least 1: " + factor);
+		ensureBuffers();
+		int w = width, h = height;
+		int[] rgb = inPlacePixels();
+		boolean lazy = rgb == null;	// if so, read tiles only as the search reaches them
+		if (lazy) {
+			if (pixels == null) pixels = new int[w * h];
+			rgb = pixels;
+		}
+
+		// Coarse level: sample the middle of each cell
+		int cw = Math.max(1, w / factor), ch = Math.max(1, h / factor);
+		if (coarseImage == null || coarseImage.getWidth() != cw || coarseImage.getHeight() != ch) {
+			coarseImage = new BufferedImage(cw, ch, BufferedImage.TYPE_INT_RGB);
+			coarse = new RegionFinder(coarseImage);
+		}
+		int[] small = intPixels(coarseImage);
+		for (int cy = 0; cy < ch; cy++) {
+			int y = Math.min(h - 1, cy * factor + factor / 2);
+			for (int cx = 0; cx < cw; cx++) {
+				int x = Math.min(w - 1, cx * factor + factor / 2);
+				small[cy * cw + cx] = lazy ? image.getRGB(x, y) : rgb[y * w + x];
+			}
+		}
+		coarse.setMaxColorDiff(maxColorDiff);
+		coarse.setMaxDeltaE(maxDeltaE);
+		coarse.setMinRegion(Math.max(1, minRegion / (factor * factor)));
+		coarse.labelRegions(targetColor);
+
+		// Full-resolution windows around the candidates' cells, merged where they overlap
+		RegionStats candidates = coarse.getLabeler().getStats();
+		ArrayList<Rectangle> windows = new ArrayList<Rectangle>();
+		for (int r = 0; r < candidates.size(); r++) {
+			Rectangle window = new Rectangle((candidates.getMinX(r) - 1) * factor, (candidates.getMinY(r) - 1) * factor,
+					(candidates.getMaxX(r) - candidates.getMinX(r) + 3) * factor, (candidates.getMaxY(r) - candidates.getMinY(r) + 3) * factor);
+			for (int k = 0; k < windows.size(); k++) {
+				if (windows.get(k).intersects(window)) {	// fold it in, and check the grown window against all again
+					window = window.union(windows.remove(k));
+					k = -1;
+				}
+			}
+			windows.add(window);
+		}
+
+		// Fine level: grow from each window's matching pixels, matching colors a tile at a time as growing reaches them
+		int tiles = ((w + tileSize - 1) / tileSize) * ((h + tileSize - 1) / tileSize);
+		if (tileMatched == null || tileMatched.length != tiles) tileMatched = new boolean[tiles];
+		Arrays.fill(tileMatched, false);
+		Arrays.fill(unclaimed, 0L);
+		growRegions(w, h, new WindowSeeds(windows, targetColor.getRGB(), rgb, lazy), null);
+	}
+
+	/**
+	 * The pyramid search's seeds: the matching pixels of its windows, in order. Fills in the match mask (first
+	 * reading the pixels, if the image isn't read in place) a tile at a time, as the windows and the regions grown
+	 * from them reach the tiles.
+	 */
+	private class WindowSeeds implements Seeds {
+		private final ArrayList<Rectangle> windows;
+		private final int[] rgb;                            // the image's pixels, where they've been read
+		private final boolean lazy;                         // whether tiles must be read into rgb before matching
+		private final int tr, tg, tb, limit;                // target color channels and squared maxColorDiff
+		private final long[] table;                         // Delta E match table, null to match by RGB distance
+		private final int tilesAcross;
+		private int window = -1;                            // which window is being scanned
+		private int x0, x1, y1, x, y;                       // its columns and last row (exclusive), and the next pixel to scan
+
+		WindowSeeds(ArrayList<Rectangle> windows, int target, int[] rgb, boolean lazy) {
+			this.windows = windows;
+			this.rgb = rgb;
+			this.lazy = lazy;
+			tr = (target >> 16) & 0xff;
+			tg = (target >> 8) & 0xff;
+			tb = target & 0xff;
+			limit = maxColorDiff * maxColorDiff;
+			table = maxDeltaE > 0 ? labMatcher.getTable(target, maxDeltaE) : null;
+			tilesAcross = (width + tileSize - 1) / tileSize;
+		}
+
+		public int next() {
+			while (true) {
+				if (x >= x1) {	// on to the next row
+					x = x0;
+					y++;
+				}
+				if (y >= y1) {	// on to the next window, matching its tiles
+					if (++window == windows.size()) return -1;
+					Rectangle r = windows.get(window);
+					x0 = Math.max(0, r.x); x1 = Math.min(width, r.x + r.width);
+					y = Math.max(0, r.y); y1 = Math.min(height, r.y + r.height);
+					x = x0;
+					if (x0 >= x1 || y >= y1) continue;	// off the image
+					for (int ty = y / tileSize; ty <= (y1 - 1) / tileSize; ty++) {
+						for (int tx = x0 / tileSize; tx <= (x1 - 1) / tileSize; tx++) match(tx, ty);
+					}
+				}
+				int i = y * width + x++;
+				if ((unclaimed[i >>> 6] & (1L << i)) != 0) return i;
+			}
+		}
+
+		public void reached(int px, int py) {
+			for (int ty = Math.max(0, py - 1) / tileSize; ty <= Math.min(height - 1, py + 1) / tileSize; ty++) {
+				for (int tx = Math.max(0, px - 1) / tileSize; tx <= Math.min(width - 1, px + 1) / tileSize; tx++) match(tx, ty);
+			}
+		}
+
+		/**
+		 * Sets the mask bits of tile (tx,ty)'s matching pixels, if they haven't been already this frame
+		 */
+		private void match(int tx, int ty) {
+			int t = ty * tilesAcross + tx;
+			if (tileMatched[t]) return;
+			tileMatched[t] = true;
+			int tx0 = tx * tileSize, ty0 = ty * tileSize;
+			int tw = Math.min(tileSize, width - tx0), th = Math.min(tileSize, height - ty0);
+			if (lazy) image.getRGB(tx0, ty0, tw, th, rgb, ty0 * width + tx0, width);
+			for (int row = ty0; row < ty0 + th; row++) {
+				for (int i = row * width + tx0, e = i + tw; i < e; i++) {
+					if (matches(rgb[i], tr, tg, tb, limit, table)) unclaimed[i >>> 6] |= 1L << i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests whether the packed RGB color is within sqrt(limit) of the target color given by its channels,
+	 * or, if there is a Delta E table, whether the table says it matches
+	 */
+	private static boolean matches(int c, int tr, int tg, int tb, int limit, long[] table) {
+		if (table != null) return LabColorMatcher.matches(table, c);
+		int dr = ((c >> 16) & 0xff) - tr, dg = ((c >> 8) & 0xff) - tg, db = (c & 0xff) - tb;
+		return dr * dr + dg * dg + db * db <= limit;
+	}
+
+	/**
+	 * Finds the same regions as findRegions, but with two-pass union-find labeling, producing a label image
+	 * and per-region statistics (size, bounding box, centroid, color sum) instead of lists of points.
+	 * Afterwards largestRegion and recolorImage work from the labels.
+	 * @param targetColor color to be searched for in image
+	 */
+	public void labelRegions(Color targetColor) {
+		int[] rgb = readPixels();
+		buildMask(rgb, width, height, targetColor, false);
+		labeler.label(rgb, mask.getBits(), width, height, minRegion);
+		labeled = true;
+		spansValid = false;
+		oneSpansRegion = -1;
+		largestPoints = null;
+	}
+
+	/**
+	 * Finds the regions of several target colors in a single pass: every pixel is classified once, to the
+	 * nearest target it is close enough to, and then the regions of all the targets are labeled together.
+	 * Afterwards the regions are numbered as for labelRegions, across all targets.
+	 * @param targets	each target color, with its own maxColorDiff
+	 * @return each target's regions (by number), in the order of targets
+	 */
+	public Map<Color, ArrayList<Integer>> labelRegions(Map<Color, Integer> targets) {
+		if (classifier == null || !targets.equals(classifierTargets)) {	// the bucket table only depends on the targets
+			Color[] colors = targets.keySet().toArray(new Color[0]);
+			int[] diffs = new int[colors.length];
+			for (int t = 0; t < colors.length; t++) diffs[t] = targets.get(colors[t]);
+			classifier = new TargetClassifier(colors, diffs);
+			classifierTargets = new LinkedHashMap<Color, Integer>(targets);
+		}
+		int[] rgb = readPixels();
+		if (classes == null || classes.length < width * height) classes = new byte[width * height];
+		classifier.classify(rgb, width * height, classes);
+		labeler.labelClasses(rgb, classes, width, height, minRegion);
+		labeled = true;
+		spansValid = false;
+		oneSpansRegion = -1;
+		largestPoints = null;
+
+		Map<Color, ArrayList<Integer>> found = new LinkedHashMap<Color, ArrayList<Integer>>();
+		ArrayList<ArrayList<Integer>> byTarget = new ArrayList<ArrayList<Integer>>();
+		for (Color color : classifierTargets.keySet()) {
+			ArrayList<Integer> regions = new ArrayList<Integer>();
+			found.put(color, regions);
+			byTarget.add(regions);
+		}
+		RegionStats stats = labeler.getStats();
+		for (int r = 0; r < stats.size(); r++) byTarget.get(stats.getTarget(r)).add(r);
+		return found;
+	}
+
+	/**
+	 * Same as labelRegions, but labels strips of the image concurrently on the common ForkJoinPool
+	 * and joins the regions that meet across strip seams; the regions found are exactly labelRegions'.
+	 * @param targetColor color to be searched for in image
+	 */
+	public void labelRegionsParallel(Color targetColor) {
+		int[] rgb = readPixels();
+		buildMask(rgb, width, height, targetColor, true);
+		labeler.labelParallel(rgb, mask.getBits(), width, height, minRegion, ForkJoinPool.commonPool());
+		labeled = true;
+		spansValid = false;
+		oneSpansRegion = -1;
+		largestPoints = null;
+	}
+
+	/**
+	 * Indexes the current image's pixels by color, so that the following whole-image searches of it
+	 * (findRegions, labelRegions) only visit pixels of colors near their targets rather than scanning every pixel.
+	 * Worth it when searching the same image for several colors, e.g., clicking around a still picture.
+	 * The index is dropped when another image is set; call this again if the image's pixels change.
+	 */
+	public void indexColors() {
+		ensureBuffers();
+		int[] rgb = inPlacePixels();
+		if (rgb == null) {	// copied once here, then reused by the searches for as long as the image is indexed
+			if (indexCopy == null || indexCopy.length != width * height) indexCopy = new int[width * height];
+			rgb = image.getRGB(0, 0, width, height, indexCopy, 0, width);
+		}
+		if (colorIndex == null) colorIndex = new ColorBucketIndex();
+		colorIndex.build(rgb, width * height);
+		indexedImage = image;
+		indexedPixels = rgb;
+	}
+
+	/**
+	 * Builds the color match mask of the first n pixels, by Delta E if maxDeltaE is set and otherwise by RGB distance,
+	 * from the color index if the whole image is indexed, and then opens and closes it if asked to
+	 * @param rgb		packed RGB pixels of a w by h image or window
+	 * @param parallel	whether to build it on the common ForkJoinPool
+	 */
+	private void buildMask(int[] rgb, int w, int h, Color targetColor, boolean parallel) {
+		int n = w * h;
+		if (indexedImage == image && image != null && n == width * height) {
+			if (maxDeltaE > 0) mask.build(colorIndex, labMatcher.getTable(targetColor.getRGB(), maxDeltaE));
+			else mask.build(colorIndex, targetColor.getRGB(), maxColorDiff);
+		}
+		else if (maxDeltaE > 0) {
+			long[] table = labMatcher.getTable(targetColor.getRGB(), maxDeltaE);
+			if (parallel) mask.buildParallel(rgb, n, table, ForkJoinPool.commonPool());
+			else mask.build(rgb, n, table);
+		}
+		else if (parallel) mask.buildParallel(rgb, n, targetColor.getRGB(), maxColorDiff, ForkJoinPool.commonPool());
+		else mask.build(rgb, n, targetColor.getRGB(), maxColorDiff);
+		if (openRadius > 0) morphology.open(mask.getBits(), w, h, openRadius);
+		if (closeRadius > 0) morphology.close(mask.getBits(), w, h, closeRadius);
+	}
+
+	/**
+	 * Returns the packed RGB pixels of image, sizing the per-frame buffers to match it.
+	 * Integer-backed images are read in place; others are copied into a reusable array, unless indexColors
+	 * already has.
+	 */
+	private int[] readPixels() {
+		ensureBuffers();
+		if (indexedImage == image && image != null) return indexedPixels;
+		int[] rgb = inPlacePixels();
+		if (rgb != null) return rgb;
+		if (pixels == null) pixels = new int[width * height];
+		return image.getRGB(0, 0, width, height, pixels, 0, width);
+	}
+
+	/**
+	 * Returns the packed RGB pixels of a ww by wh window of image at (x0,y0), row by row,
+	 * copying only the window
+	 */
+	private int[] readWindow(int x0, int y0, int ww, int wh) {
+		if (pixels == null) pixels = new int[width * height];
+		if (ww == 0 || wh == 0) return pixels;
+		int[] rgb = inPlacePixels();
+		if (rgb == null) return image.getRGB(x0, y0, ww, wh, pixels, 0, ww);
+		for (int y = 0; y < wh; y++) {
+			System.arraycopy(rgb, (y0 + y) * width + x0, pixels, y * ww, ww);
+		}
+		return pixels;
+	}
+
+	/**
+	 * Sizes the per-frame buffers to match image, if they don't already
+	 */
+	private void ensureBuffers() {
+		int w = image.getWidth(), h = image.getHeight();
+		if (w != width || h != height || unclaimed == null) {
+			width = w; height = h;
+			pixels = null;
+			unclaimed = new long[(w * h + 63) >>> 6];
+			regionPixels = new int[w * h];
 		}
 	}
 
 	/**
-	 * Tests whether the two colors are "similar enough."
-	 * Subject to the maxColorDiff threshold
+	 * Returns image's own pixel array if it is a plain packed-int image, null otherwise
 	 */
-	private static boolean colorMatch(Color c1, Color c2) {
-		int d = (c1.getRed() - c2.getRed()) * (c1.getRed() - c2.getRed())
-				+ (c1.getGreen() - c2.getGreen()) * (c1.getGreen() - c2.getGreen())
-				+ (c1.getBlue() - c2.getBlue()) * (c1.getBlue() - c2.getBlue());
+	private int[] inPlacePixels() {
+		return intPixels(image);
+	}
 
-		return Math.sqrt(d) <= maxColorDiff;
+	/**
+	 * Returns the image's own pixel array (pixel (x,y) at y*width + x) if it is a plain
+	 * TYPE_INT_RGB or TYPE_INT_ARGB image, null otherwise
+	 */
+	static int[] intPixels(BufferedImage img) {
+		int type = img.getType();
+		if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+				&& img.getRaster().getDataBuffer() instanceof DataBufferInt) {
+			SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) img.getSampleModel();
+			DataBufferInt buffer = (DataBufferInt) img.getRaster().getDataBuffer();
+			if (sm.getScanlineStride() == img.getWidth() && buffer.getOffset() == 0 && img.getRaster().getParent() == null) {
+				return buffer.getData();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the bounding box of the largest region of the last search, null if there is none
+	 */
+	public Rectangle getLargestBounds() {
+		if (labeled) {
+			int r = labeler.getLargest();
+			if (r < 0) return null;
+			RegionStats stats = labeler.getStats();
+			return new Rectangle(stats.getMinX(r), stats.getMinY(r),
+					stats.getMaxX(r) - stats.getMinX(r) + 1, stats.getMaxY(r) - stats.getMinY(r) + 1);
+		}
+		if (largest < 0) return null;
+		int minX = width, minY = height, maxX = -1, maxY = -1;
+		for (int k = regionStart[largest]; k < regionStart[largest + 1]; k++) {
+			int x = regionPixels[k] % width, y = regionPixels[k] / width;
+			if (x < minX) minX = x;
+			if (x > maxX) maxX = x;
+			if (y < minY) minY = y;
+			if (y > maxY) maxY = y;
+		}
+		return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
 	}
 
 	/**
 	 * Returns the largest region detected (if any region has been detected)
 	 */
 	public ArrayList<Point> largestRegion() {
-		if (regions.size() > 0) {
-			ArrayList<Point> currMax = regions.get(0);
-			for (ArrayList<Point> region : regions) {
-				if (region.size() > currMax.size()) currMax = region;
+		if (labeled) return largestLabeledRegion();
+		if (largest < 0) return null;
+		if (largestPoints == null) {	// only build the points once per findRegions
+			largestPoints = new ArrayList<Point>(getRegionSize(largest));
+			for (int k = regionStart[largest]; k < regionStart[largest + 1]; k++) {
+				int p = regionPixels[k];
+				largestPoints.add(new Point(p % width, p / width));
+			}
+		}
+		return largestPoints;
+	}
+
+	/**
+	 * Builds the largest labeled region's points by scanning just its bounding box
+	 */
+	private ArrayList<Point> largestLabeledRegion() {
+		int r = labeler.getLargest();
+		if (r < 0) return null;
+		if (largestPoints == null) {
+			RegionStats stats = labeler.getStats();
+			int[] labels = labeler.getLabels();
+			largestPoints = new ArrayList<Point>(stats.getCount(r));
+			for (int y = stats.getMinY(r); y <= stats.getMaxY(r); y++) {
+				for (int x = stats.getMinX(r); x <= stats.getMaxX(r); x++) {
+					if (labels[y * width + x] == r) largestPoints.add(new Point(x, y));
+				}
 			}
-			return currMax;
 		}
-		else return null;
+		return largestPoints;
 	}
 
 	/**
 	 * Sets recoloredImage to be a copy of image, 
 	 * but with each region a uniform random color, 
-	 * so we can see where they are
+	 * so we can see where they are.
+	 * The copy is written straight into the pixels of one of two TYPE_INT_RGB images owned by the finder,
+	 * alternating between them, so no image is allocated per frame and the previous recoloredImage can still be
+	 * displayed while this one is written (it is overwritten by the call after next).
 	 */
 	public void recolorImage() {
+		StageTimer t = timer;
+		long start = t != null ? StageTimer.start() : 0;
+		BufferedImage back = recolorBuffers[recolorBack];
+		int w = image.getWidth(), h = image.getHeight();
+		if (back == null || back.getWidth() != w || back.getHeight() != h) {
+			back = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+			recolorBuffers[recolorBack] = back;
+		}
 		// First copy the original
-		recoloredImage = new BufferedImage(image.getColorModel(), image.copyData(null),
-				image.getColorModel().isAlphaPremultiplied(), null);
-		// Now recolor the regions in it
-		for (ArrayList<Point> region : regions) {
+		int[] data = intPixels(back);
+		int[] src = inPlacePixels();
+		if (src != null) System.arraycopy(src, 0, data, 0, w * h);
+		else image.getRGB(0, 0, w, h, data, 0, w);
+		// Now recolor the regions in it, a run of pixels at a time
+		long spansNanos = 0;                                // time spent encoding the spans, if they weren't yet
+		if (t != null && !spansValid) {
+			long spansStart = StageTimer.start();
+			getSpans();
+			spansNanos = t.record("spans", spansStart) - spansStart;
+		}
+		RegionSpans runs = getSpans();
+		for (int r = 0; r < runs.getNumRegions(); r++) {
 			int randColor = (int) (16777216 * Math.random());
-			for (Point i : region) {
-				recoloredImage.setRGB(i.x, i.y, randColor);
-			}
+			runs.paint(back, r, randColor);
 		}
+		recoloredImage = back;
+		recolorBack = 1 - recolorBack;
+		if (t != null) t.add("recolor", System.nanoTime() - start - spansNanos);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,172 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Repeatable RegionFinder benchmark over synthetic frames of several sizes and region densities:
+ *   blobs		a few big regions of the target color on a gradient
+ *   speckles	many tiny patches of the target color, mostly too small to keep
+ *   full		every pixel matches (the worst case for growing)
+ *   noise		random colors, a third of them near the target
+ * For each it times findRegions, and findRegions followed by largestRegion or by recolorImage (which includes
+ * encoding the regions' spans), after a warmup, and reports the median and 99th percentile milliseconds per
+ * call and the bytes allocated per call (from the JVM's per-thread allocation counter, where available).
+ *
+ * Usage: java -Xmx2g RegionFinderBenchmark [-sizes WxH,WxH...] [-cases case,case...] [-seconds s]
+ *
+ * @author Paige Harris and Cha Krupka, Dartmouth CS10, Spring 2022
+ */
+public class RegionFinderBenchmark {
+	private static final int target = 0x2060e0;             // the color the frames' regions are made of
+	private static final String[] allCases = { "blobs", "speckles", "full", "noise" };
+	private static final String[] allSizes = { "320x240", "640x480", "1280x720", "1920x1080", "3840x2160" };
+
+	private static volatile long sink;                      // results go here so the work can't be optimized away
+
+	/**
+	 * Something to time, run once per call
+	 */
+	private interface Op {
+		public void run(RegionFinder finder);
+	}
+
+	/**
+	 * Returns a w by h frame of the given case
+	 * @param seed	for the random parts, so every run sees the same frame
+	 */
+	public static BufferedImage makeFrame(String kind, int w, int h, long seed) {
+		BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+		int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		Random random = new Random(seed);
+		if (kind.equals("full")) {
+			for (int i = 0; i < data.length; i++) data[i] = near(target, random);
+		}
+		else if (kind.equals("noise")) {
+			for (int i = 0; i < data.length; i++) data[i] = random.nextInt(3) == 0 ? near(target, random) : random.nextInt(1 << 24);
+		}
+		else {
+			// gray gradient background, far from the target color
+			for (int y = 0; y < h; y++) {
+				for (int x = 0; x < w; x++) {
+					int v = 96 + 64 * (x + y) / (w + h);
+					data[y * w + x] = (v << 16) | (v << 8) | v;
+				}
+			}
+			if (kind.equals("blobs")) {
+				for (int b = 0; b < 5; b++) {
+					int r = Math.min(w, h) / 12 + random.nextInt(Math.min(w, h) / 12 + 1);
+					int cx = random.nextInt(w), cy = random.nextInt(h);
+					for (int y = Math.max(0, cy - r); y < Math.min(h, cy + r); y++) {
+						for (int x = Math.max(0, cx - r); x < Math.min(w, cx + r); x++) {
+							if ((x - cx) * (x - cx) + (y - cy) * (y - cy) <= r * r) data[y * w + x] = near(target, random);
+						}
+					}
+				}
+			}
+			else if (kind.equals("speckles")) {
+				// squares of 1x1 to 8x8 covering about a tenth of the frame
+				for (int s = 0; s < w * h / 200; s++) {
+					int size = 1 + random.nextInt(8);
+					int x0 = random.nextInt(w), y0 = random.nextInt(h);
+					for (int y = y0; y < Math.min(h, y0 + size); y++) {
+						for (int x = x0; x < Math.min(w, x0 + size); x++) data[y * w + x] = near(target, random);
+					}
+				}
+			}
+			else throw new IllegalArgumentException("unknown case " + kind);
+		}
+		return image;
+	}
+
+	/**
+	 * Returns a color within a few steps of c in each channel (well inside the default maxColorDiff)
+	 */
+	private static int near(int c, Random random) {
+		int r = ((c >> 16) & 0xff) + random.nextInt(7) - 3;
+		int g = ((c >> 8) & 0xff) + random.nextInt(7) - 3;
+		int b = (c & 0xff) + random.nextInt(7) - 3;
+		return (r << 16) | (g << 8) | b;
+	}
+
+	/**
+	 * Times the op: warms up for the given time, then measures it for that long again (and at least 5 calls)
+	 * @return median and 99th percentile ms per call, and bytes allocated per call (-1 if unknown)
+	 */
+	private static double[] measure(RegionFinder finder, Op op, double seconds) {
+		long warmupEnd = System.nanoTime() + (long) (seconds * 1e9);
+		while (System.nanoTime() < warmupEnd) op.run(finder);
+
+		long[] times = new long[64];
+		int n = 0;
+		long allocatedBefore = allocatedBytes();
+		long end = System.nanoTime() + (long) (seconds * 1e9);
+		while (n < 5 || System.nanoTime() < end) {
+			long start = System.nanoTime();
+			op.run(finder);
+			if (n == times.length) times = Arrays.copyOf(times, n * 2);
+			times[n++] = System.nanoTime() - start;
+		}
+		long allocatedAfter = allocatedBytes();
+		Arrays.sort(times, 0, n);
+		return new double[] { times[(n - 1) / 2] / 1e6, times[(int) Math.ceil(0.99 * n) - 1] / 1e6,
+				allocatedBefore < 0 ? -1 : (double) (allocatedAfter - allocatedBefore) / n };
+	}
+
+	/**
+	 * Returns how many bytes this thread has allocated so far, or -1 if the JVM doesn't say
+	 */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+		return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	public static void main(String[] args) {
+		String[] sizes = allSizes, cases = allCases;
+		double seconds = 1;
+		for (int a = 0; a + 1 < args.length; a += 2) {
+			if (args[a].equals("-sizes")) sizes = args[a + 1].split(",");
+			else if (args[a].equals("-cases")) cases = args[a + 1].split(",");
+			else if (args[a].equals("-seconds")) seconds = Double.parseDouble(args[a + 1]);
+			else System.err.println("unexpected option " + args[a]);
+		}
+
+		final Color color = new Color(target);
+		Map<String, Op> ops = new LinkedHashMap<String, Op>();
+		ops.put("findRegions", new Op() {
+			public void run(RegionFinder finder) {
+				finder.findRegions(color);
+				sink += finder.getNumRegions();
+			}
+		});
+		ops.put("largestRegion", new Op() {
+			public void run(RegionFinder finder) {
+				finder.findRegions(color);
+				sink += finder.largestRegion().size();
+			}
+		});
+		ops.put("recolorImage", new Op() {
+			public void run(RegionFinder finder) {
+				finder.findRegions(color);	// so the spans are encoded afresh each call, as they are per frame
+				finder.recolorImage();
+				sink += finder.getRecoloredImage().getRGB(0, 0);
+			}
+		});
+
+		System.out.printf("%-9s %-10s %-14s %10s %10s %14s%n", "case", "size", "op", "p50 ms", "p99 ms", "bytes/call");
+		for (String kind : cases) {
+			for (String size : sizes) {
+				String[] wh = size.split("x");
+				BufferedImage frame = makeFrame(kind, Integer.parseInt(wh[0]), Integer.parseInt(wh[1]), 42);
+				RegionFinder finder = new RegionFinder(frame);
+				for (Map.Entry<String, Op> op : ops.entrySet()) {
+					double[] result = measure(finder, op.getValue(), seconds);
+					System.out.printf(Locale.ROOT, "%-9s %-10s %-14s %10.3f %10.3f %14.0f%n",
+							kind, size, op.getKey(), result[0], result[1], result[2]);
+				}
+			}
+		}
+	}
+}
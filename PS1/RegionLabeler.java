@@ -0,0 +1,288 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Two-pass union-find connected-component labeling: finds the same 8-connected regions as
+ * RegionFinder's flood fill, but as an int label image plus a RegionStats table,
+ * without creating any per-pixel objects.
+ * The first pass links each matching pixel to its already-seen neighbors; since links always
+ * point to a smaller pixel index, the second pass can resolve every pixel's label from its parent's
+ * in a single raster-order sweep while accumulating the statistics.
+ * The parallel mode labels horizontal strips concurrently, then joins the regions that touch across
+ * strip seams with a second, much smaller union-find over the strips' regions.
+ *
+ * @author Paige Harris and Cha Krupka, Dartmouth CS10, Spring 2022
+ */
+public class RegionLabeler {
+	private int width, height;                              // dimensions of the last labeled image
+	private int[] labels;                                   // region of each pixel (y*width + x), -1 if none
+	private RegionStats stats = new RegionStats();          // statistics of the kept regions
+	private int[] remap = new int[16];                      // provisional region -> kept region, reused
+	private int largest = -1;                               // the kept region with the most pixels, -1 if none
+
+	// Parallel mode buffers, reused from frame to frame
+	private static final int minStripRows = 16;             // don't bother splitting finer than this
+	private RegionStats[] stripStats = new RegionStats[0];  // each strip's own regions
+	private int[] stripBase = new int[0];                   // where each strip's regions start in the combined table
+	private int[] seams = new int[16];                      // union-find over the combined table's regions
+	private int[] keep = new int[16];                       // combined region -> kept region (roots only), or -1
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the label image: for pixel (x,y), labels[y*width + x] is its region, or -1 if it is in none
+	 */
+	public int[] getLabels() {
+		return labels;
+	}
+
+	public RegionStats getStats() {
+		return stats;
+	}
+
+	public int getNumRegions() {
+		return stats.size();
+	}
+
+	/**
+	 * Returns the region with the most pixels, -1 if there are none
+	 */
+	public int getLargest() {
+		return largest;
+	}
+
+	/**
+	 * Labels the regions of matching pixels, keeping those of at least minRegion pixels.
+	 * Regions are numbered in raster order of their first pixel, the same order flood filling finds them.
+	 * @param rgb			packed RGB pixels, row by row (for the color statistics)
+	 * @param match			ColorMatchMask bits of which pixels match
+	 * @param minRegion		how many pixels a region needs to be kept
+	 */
+	public void label(int[] rgb, long[] match, int width, int height, int minRegion) {
+		if (labels == null || labels.length < width * height) labels = new int[width * height];
+		this.width = width; this.height = height;
+		stats.clear();
+		labelRows(rgb, match, null, width, 0, height, labels, stats);
+		filter(minRegion);
+	}
+
+	/**
+	 * Labels the regions of several target colors at once: neighboring pixels are in the same region
+	 * when they were classified to the same target. Each region's target is in its statistics.
+	 * @param rgb			packed RGB pixels, row by row (for the color statistics)
+	 * @param classes		TargetClassifier classes: 1 + each pixel's target, or 0 for none
+	 * @param minRegion		how many pixels a region needs to be kept
+	 */
+	public void labelClasses(int[] rgb, byte[] classes, int width, int height, int minRegion) {
+		if (labels == null || labels.length < width * height) labels = new int[width * height];
+		this.width = width; this.height = height;
+		stats.clear();
+		labelRows(rgb, null, classes, width, 0, height, labels, stats);
+		filter(minRegion);
+	}
+
+	/**
+	 * Same as label, but labels horizontal strips of the image concurrently on the pool, then joins
+	 * regions across the strip seams. Produces exactly the labels and statistics label would.
+	 * @param pool		where to run the strips
+	 */
+	public void labelParallel(int[] rgb, long[] match, int width, int height, int minRegion, ForkJoinPool pool) {
+		if (labels == null || labels.length < width * height) labels = new int[width * height];
+		this.width = width; this.height = height;
+		int strips = Math.max(1, Math.min(pool.getParallelism() * 4, height / minStripRows));
+		if (stripStats.length < strips) {
+			RegionStats[] more = new RegionStats[strips];
+			for (int s = 0; s < strips; s++) more[s] = s < stripStats.length ? stripStats[s] : new RegionStats();
+			stripStats = more;
+			stripBase = new int[strips];
+		}
+		final int[] lab = labels;
+
+		// Label each strip on its own
+		List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>(strips);
+		for (int s = 0; s < strips; s++) {
+			final int y0 = stripStart(s, strips, height), y1 = stripStart(s + 1, strips, height);
+			final RegionStats own = stripStats[s];
+			tasks.add(ForkJoinTask.adapt(new Runnable() {
+				public void run() {
+					own.clear();
+					labelRows(rgb, match, null, width, y0, y1, lab, own);
+				}
+			}));
+		}
+		runAll(pool, tasks);
+
+		// Combine the strips' tables, in strip order, so the combined regions stay in raster order of first pixel
+		stats.clear();
+		for (int s = 0; s < strips; s++) stripBase[s] = stats.append(stripStats[s]);
+		int n = stats.size();
+		if (seams.length < n) {
+			seams = new int[Math.max(n, seams.length * 2)];
+			keep = new int[seams.length];
+		}
+		if (remap.length < n) remap = new int[Math.max(n, remap.length * 2)];
+		for (int r = 0; r < n; r++) seams[r] = r;
+
+		// Join regions touching across each seam: the first row of a strip against the last row of the one above
+		for (int s = 1; s < strips; s++) {
+			int y = stripStart(s, strips, height);
+			for (int x = 0, i = y * width; x < width; x++, i++) {
+				if (lab[i] < 0) continue;
+				int a = stripBase[s] + lab[i];
+				for (int j = i - width - (x > 0 ? 1 : 0); j <= i - width + (x < width - 1 ? 1 : 0); j++) {
+					if (lab[j] >= 0) union(seams, a, stripBase[s - 1] + lab[j]);
+				}
+			}
+		}
+
+		// Fold each region's statistics into its root (always a smaller index), then number the kept roots in order
+		int kept = 0;
+		largest = -1;
+		for (int r = 0; r < n; r++) {
+			int root = find(seams, r);
+			if (root != r) stats.merge(root, r);
+		}
+		for (int r = 0; r < n; r++) {
+			int root = find(seams, r);
+			if (root == r && stats.getCount(r) >= minRegion) {
+				if (largest < 0 || stats.getCount(r) > stats.getCount(largest)) largest = r;
+				keep[r] = kept++;
+			}
+			else keep[r] = -1;
+			remap[r] = keep[root];
+		}
+		if (largest >= 0) largest = keep[largest];
+		stats.compact(keep);
+
+		// Rewrite each strip's labels to the kept regions
+		tasks.clear();
+		for (int s = 0; s < strips; s++) {
+			final int i0 = stripStart(s, strips, height) * width, i1 = stripStart(s + 1, strips, height) * width;
+			final int base = stripBase[s];
+			final int[] map = remap;
+			tasks.add(ForkJoinTask.adapt(new Runnable() {
+				public void run() {
+					for (int i = i0; i < i1; i++) {
+						if (lab[i] >= 0) lab[i] = map[base + lab[i]];
+					}
+				}
+			}));
+		}
+		runAll(pool, tasks);
+	}
+
+	/**
+	 * Returns the first row of strip s, when height rows are split into the given number of strips
+	 */
+	private static int stripStart(int s, int strips, int height) {
+		return (int) ((long) height * s / strips);
+	}
+
+	/**
+	 * Runs the tasks on the pool and waits for all of them
+	 */
+	private static void runAll(ForkJoinPool pool, final List<ForkJoinTask<?>> tasks) {
+		pool.invoke(ForkJoinTask.adapt(new Runnable() {
+			public void run() {
+				ForkJoinTask.invokeAll(tasks);
+			}
+		}));
+	}
+
+	/**
+	 * Labels rows y0 to y1-1 on their own, leaving each pixel's region in the stats table in lab
+	 * (or -1 for non-matching pixels). Regions that only connect through rows outside the range stay separate.
+	 * Pixels match according to the mask, or if it is null, according to the classes, where they must
+	 * also be of the same class to be joined.
+	 */
+	static void labelRows(int[] rgb, long[] match, byte[] classes, int w, int y0, int y1, int[] lab, RegionStats stats) {
+		// First pass: each matching pixel starts as its own set, then joins its matching neighbors
+		// above and to the left. A set's root is always its smallest pixel index.
+		for (int y = y0; y < y1; y++) {
+			for (int x = 0, i = y * w; x < w; x++, i++) {
+				if (match != null ? (match[i >>> 6] & (1L << i)) == 0 : classes[i] == 0) {
+					lab[i] = -1;
+					continue;
+				}
+				lab[i] = i;
+				boolean up = y > y0;
+				if (up && joins(lab, classes, i, i - w)) {
+					union(lab, i, i - w);	// north is already joined to northwest and northeast
+				}
+				else {
+					if (x > 0 && joins(lab, classes, i, i - 1)) union(lab, i, i - 1);	// west is already joined to northwest
+					else if (up && x > 0 && joins(lab, classes, i, i - w - 1)) union(lab, i, i - w - 1);
+					if (up && x < w - 1 && joins(lab, classes, i, i - w + 1)) union(lab, i, i - w + 1);
+				}
+			}
+		}
+		// Second pass: roots get new regions; everyone else copies the (already resolved) region of its parent
+		for (int y = y0; y < y1; y++) {
+			for (int x = 0, i = y * w; x < w; x++, i++) {
+				int p = lab[i];
+				if (p < 0) continue;
+				int r = (p == i) ? stats.add(classes != null ? classes[i] - 1 : 0) : lab[p];
+				lab[i] = r;
+				stats.addPixel(r, x, y, rgb[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns whether already-seen neighbor j matched, and (if there are classes) is in the same class as pixel i
+	 */
+	private static boolean joins(int[] lab, byte[] classes, int i, int j) {
+		return lab[j] >= 0 && (classes == null || classes[j] == classes[i]);
+	}
+
+	/**
+	 * Finds the root of element i's set, halving the path along the way
+	 */
+	private static int find(int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	/**
+	 * Joins the sets of elements a and b, keeping the smaller root
+	 */
+	private static void union(int[] parent, int a, int b) {
+		int ra = find(parent, a), rb = find(parent, b);
+		if (ra < rb) parent[rb] = ra;
+		else if (rb < ra) parent[ra] = rb;
+	}
+
+	/**
+	 * Drops the regions smaller than minRegion, renumbering the rest (in order) in both stats and labels
+	 */
+	private void filter(int minRegion) {
+		int n = stats.size();
+		if (remap.length < n) remap = new int[Math.max(n, remap.length * 2)];
+		int kept = 0;
+		largest = -1;
+		for (int r = 0; r < n; r++) {
+			if (stats.getCount(r) >= minRegion) {
+				if (largest < 0 || stats.getCount(r) > stats.getCount(largest)) largest = r;
+				remap[r] = kept++;
+			}
+			else remap[r] = -1;
+		}
+		if (largest >= 0) largest = remap[largest];
+		if (kept == n) return;	// nothing dropped, labels are already right
+		stats.compact(remap);
+		for (int i = 0; i < width * height; i++) {
+			if (labels[i] >= 0) labels[i] = remap[labels[i]];
+		}
+	}
+}
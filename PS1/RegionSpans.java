@@ -0,0 +1,244 @@
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Run-length encoded regions: each region is a list of horizontal spans, each span a row y and
+ * the pixels xStart (inclusive) to xEnd (exclusive) on it, all kept in primitive arrays.
+ * Spans of region r are k = getSpanStart(r) to getSpanEnd(r)-1, in raster order.
+ * A solid blob costs 12 bytes per row instead of an object per pixel, and painting a span is a single fill.
+ *
+ * @author Paige Harris and Cha Krupka, Dartmouth CS10, Spring 2022
+ */
+public class RegionSpans {
+	private int numRegions = 0;                             // number of regions
+	private int[] spanStart = new int[17];                  // spanStart[r] is region r's first span; spanStart[numRegions] is the total
+	private int[] spanY = new int[64];                      // row of each span
+	private int[] spanXStart = new int[64];                 // first pixel of each span
+	private int[] spanXEnd = new int[64];                   // one past the last pixel of each span
+	private int[] scratch = new int[0];                     // for sorting a region's pixels
+	private int[] rowBuffer = new int[0];                   // a span's worth of one color, for images that aren't int-backed
+	private long[] boxBits = new long[0];                   // for encodeRegion, one bit per pixel of the region's bounding box
+
+	public int getNumRegions() {
+		return numRegions;
+	}
+
+	public int getSpanStart(int r) {
+		return spanStart[r];
+	}
+
+	public int getSpanEnd(int r) {
+		return spanStart[r + 1];
+	}
+
+	public int getY(int k) {
+		return spanY[k];
+	}
+
+	public int getXStart(int k) {
+		return spanXStart[k];
+	}
+
+	public int getXEnd(int k) {
+		return spanXEnd[k];
+	}
+
+	/**
+	 * Returns how many pixels region r covers
+	 */
+	public int getPixelCount(int r) {
+		int n = 0;
+		for (int k = spanStart[r]; k < spanStart[r + 1]; k++) n += spanXEnd[k] - spanXStart[k];
+		return n;
+	}
+
+	/**
+	 * Encodes regions given as lists of pixel indices (y*width + x), in any order
+	 * @param pixels		all regions' pixels, back to back
+	 * @param regionStart	regionStart[r] is where region r begins in pixels; regionStart[n] where the last ends
+	 * @param n				number of regions
+	 */
+	public void encodePixels(int[] pixels, int[] regionStart, int n, int width) {
+		numRegions = 0;
+		ensureRegions(n);
+		int k = 0;
+		for (int r = 0; r < n; r++) {
+			int size = regionStart[r + 1] - regionStart[r];
+			if (scratch.length < size) scratch = new int[Math.max(size, scratch.length * 2)];
+			System.arraycopy(pixels, regionStart[r], scratch, 0, size);
+			Arrays.sort(scratch, 0, size);
+			spanStart[r] = k;
+			for (int i = 0; i < size; ) {	// each run of consecutive indices on one row is a span
+				int y = scratch[i] / width, x = scratch[i] % width, j = i + 1;
+				while (j < size && scratch[j] == scratch[j - 1] + 1 && scratch[j] / width == y) j++;
+				k = addSpan(k, y, x, x + (j - i));
+				i = j;
+			}
+		}
+		spanStart[n] = k;
+		numRegions = n;
+	}
+
+	/**
+	 * Encodes just one region, as region 0, given as a list of pixel indices (y*width + x) in any order.
+	 * Rather than sorting them, marks them in a bitmap of the region's bounding box and reads the runs off its rows,
+	 * so it takes time for the region's pixels plus its bounding box's area / 64.
+	 */
+	public void encodeRegion(int[] pixels, int from, int to, int width) {
+		numRegions = 0;
+		ensureRegions(1);
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = -1, maxY = -1;
+		for (int i = from; i < to; i++) {
+			int x = pixels[i] % width, y = pixels[i] / width;
+			if (x < minX) minX = x;
+			if (x > maxX) maxX = x;
+			if (y < minY) minY = y;
+			if (y > maxY) maxY = y;
+		}
+		int k = 0;
+		if (from < to) {
+			int boxWidth = maxX - minX + 1, words = (boxWidth + 63) >>> 6, size = words * (maxY - minY + 1);
+			if (boxBits.length < size) boxBits = new long[Math.max(size, boxBits.length * 2)];
+			else Arrays.fill(boxBits, 0, size, 0L);
+			for (int i = from; i < to; i++) {
+				int x = pixels[i] % width - minX, y = pixels[i] / width - minY;
+				boxBits[y * words + (x >>> 6)] |= 1L << x;
+			}
+			for (int y = minY, row = 0; y <= maxY; y++, row += words) {
+				int x = nextBit(row, words, 0, true);
+				while (x < boxWidth) {	// each run of set bits is a span
+					int end = Math.min(boxWidth, nextBit(row, words, x, false));
+					k = addSpan(k, y, minX + x, minX + end);
+					x = nextBit(row, words, end, true);
+				}
+			}
+		}
+		spanStart[0] = 0;
+		spanStart[1] = k;
+		numRegions = 1;
+	}
+
+	/**
+	 * Returns the first x at or after from whose bit in the row of boxBits (starting at word row) is set (or clear),
+	 * or the row's width in bits if there is none
+	 */
+	private int nextBit(int row, int words, int from, boolean set) {
+		int w = from >>> 6;
+		if (w >= words) return words << 6;
+		long word = (set ? boxBits[row + w] : ~boxBits[row + w]) & (-1L << from);
+		while (word == 0) {
+			if (++w == words) return words << 6;
+			word = set ? boxBits[row + w] : ~boxBits[row + w];
+		}
+		return (w << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+	/**
+	 * Encodes just region r of a label image, as region 0, by scanning its bounding box (inclusive)
+	 */
+	public void encodeLabel(int[] labels, int width, int r, int minX, int minY, int maxX, int maxY) {
+		numRegions = 0;
+		ensureRegions(1);
+		int k = 0;
+		for (int y = minY; y <= maxY; y++) {
+			for (int x = minX, i = y * width + minX; x <= maxX; x++, i++) {
+				if (labels[i] != r) continue;
+				int x0 = x;
+				while (x + 1 <= maxX && labels[i + 1] == r) {
+					x++; i++;
+				}
+				k = addSpan(k, y, x0, x + 1);
+			}
+		}
+		spanStart[0] = 0;
+		spanStart[1] = k;
+		numRegions = 1;
+	}
+
+	/**
+	 * Encodes regions given as a label image (labels[y*width + x] is the pixel's region, or -1 for none)
+	 * @param n		number of regions
+	 */
+	public void encodeLabels(int[] labels, int width, int height, int n) {
+		numRegions = 0;
+		ensureRegions(n);
+		// Count each region's spans, so that each gets a contiguous block
+		Arrays.fill(spanStart, 0, n + 1, 0);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0, i = y * width; x < width; x++, i++) {
+				int r = labels[i];
+				if (r >= 0 && (x == 0 || labels[i - 1] != r)) spanStart[r + 1]++;
+			}
+		}
+		for (int r = 0; r < n; r++) spanStart[r + 1] += spanStart[r];
+		ensureSpans(spanStart[n]);
+		// Fill them in, spanStart[r] tracking where region r's next span goes
+		for (int y = 0; y < height; y++) {
+			for (int x = 0, i = y * width; x < width; ) {
+				int r = labels[i];
+				int x0 = x;
+				do {
+					x++; i++;
+				} while (x < width && labels[i] == r);
+				if (r >= 0) {
+					int k = spanStart[r]++;
+					spanY[k] = y; spanXStart[k] = x0; spanXEnd[k] = x;
+				}
+			}
+		}
+		// Each spanStart[r] now holds region r's end, which is where r+1 starts
+		System.arraycopy(spanStart, 0, spanStart, 1, n);
+		spanStart[0] = 0;
+		numRegions = n;
+	}
+
+	/**
+	 * Paints region r onto the image in a single color
+	 * @param rgb	packed RGB color
+	 */
+	public void paint(BufferedImage image, int r, int rgb) {
+		int[] data = RegionFinder.intPixels(image);
+		int width = image.getWidth();
+		for (int k = spanStart[r]; k < spanStart[r + 1]; k++) {
+			int y = spanY[k];
+			if (data != null) {
+				Arrays.fill(data, y * width + spanXStart[k], y * width + spanXEnd[k], rgb);
+			}
+			else {
+				int len = spanXEnd[k] - spanXStart[k];
+				if (rowBuffer.length < len) rowBuffer = new int[Math.max(len, rowBuffer.length * 2)];
+				Arrays.fill(rowBuffer, 0, len, rgb);
+				image.setRGB(spanXStart[k], y, len, 1, rowBuffer, 0, len);
+			}
+		}
+	}
+
+	/**
+	 * Makes room for n regions
+	 */
+	private void ensureRegions(int n) {
+		if (spanStart.length < n + 1) spanStart = new int[Math.max(n + 1, spanStart.length * 2)];
+	}
+
+	/**
+	 * Makes room for n spans
+	 */
+	private void ensureSpans(int n) {
+		if (spanY.length < n) {
+			int size = Math.max(n, spanY.length * 2);
+			spanY = Arrays.copyOf(spanY, size);
+			spanXStart = Arrays.copyOf(spanXStart, size);
+			spanXEnd = Arrays.copyOf(spanXEnd, size);
+		}
+	}
+
+	/**
+	 * Stores a span at index k, growing as needed
+	 * @return the next index
+	 */
+	private int addSpan(int k, int y, int xStart, int xEnd) {
+		ensureSpans(k + 1);
+		spanY[k] = y; spanXStart[k] = xStart; spanXEnd[k] = xEnd;
+		return k + 1;
+	}
+}
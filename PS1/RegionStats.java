@@ -0,0 +1,190 @@
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * Per-region statistics, stored column-wise in primitive arrays so that
+ * labeling can accumulate them without creating an object per region or per pixel.
+ * Regions are numbered 0 to size()-1 in the order they were added.
+ *
+ * @author Paige Harris and Cha Krupka, Dartmouth CS10, Spring 2022
+ */
+public class RegionStats {
+	private int size = 0;                                   // number of regions in the table
+	private int[] count = new int[16];                      // pixels in each region
+	private int[] minX = new int[16], minY = new int[16];   // bounding box, upper-left (inclusive)
+	private int[] maxX = new int[16], maxY = new int[16];   // bounding box, bottom-right (inclusive)
+	private long[] sumX = new long[16], sumY = new long[16];                        // for the centroid
+	private long[] sumR = new long[16], sumG = new long[16], sumB = new long[16];   // for the average color
+	private int[] target = new int[16];                     // which target color the region matched, when finding several
+
+	/**
+	 * Empties the table, keeping its storage for the next frame
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getCount(int r) {
+		return count[r];
+	}
+
+	public int getMinX(int r) {
+		return minX[r];
+	}
+
+	public int getMinY(int r) {
+		return minY[r];
+	}
+
+	public int getMaxX(int r) {
+		return maxX[r];
+	}
+
+	public int getMaxY(int r) {
+		return maxY[r];
+	}
+
+	public double getCentroidX(int r) {
+		return (double) sumX[r] / count[r];
+	}
+
+	public double getCentroidY(int r) {
+		return (double) sumY[r] / count[r];
+	}
+
+	/**
+	 * Returns which of several target colors region r matched (0 when there was just one)
+	 */
+	public int getTarget(int r) {
+		return target[r];
+	}
+
+	/**
+	 * Returns the summed packed RGB color of region r's pixels, by channel
+	 * @param channel	0 for red, 1 for green, 2 for blue
+	 */
+	public long getColorSum(int r, int channel) {
+		return channel == 0 ? sumR[r] : channel == 1 ? sumG[r] : sumB[r];
+	}
+
+	/**
+	 * Returns the average color of region r
+	 */
+	public Color getAverageColor(int r) {
+		return new Color((int) (sumR[r] / count[r]), (int) (sumG[r] / count[r]), (int) (sumB[r] / count[r]));
+	}
+
+	/**
+	 * Returns the region with the most pixels, -1 if the table is empty
+	 */
+	public int largest() {
+		int best = -1;
+		for (int r = 0; r < size; r++) {
+			if (best < 0 || count[r] > count[best]) best = r;
+		}
+		return best;
+	}
+
+	/**
+	 * Adds an empty region to the table
+	 * @return the new region's index
+	 */
+	public int add() {
+		return add(0);
+	}
+
+	/**
+	 * Adds an empty region matching the given target color to the table
+	 * @return the new region's index
+	 */
+	public int add(int t) {
+		if (size == count.length) grow();
+		target[size] = t;
+		count[size] = 0;
+		minX[size] = Integer.MAX_VALUE; minY[size] = Integer.MAX_VALUE;
+		maxX[size] = Integer.MIN_VALUE; maxY[size] = Integer.MIN_VALUE;
+		sumX[size] = 0; sumY[size] = 0;
+		sumR[size] = 0; sumG[size] = 0; sumB[size] = 0;
+		return size++;
+	}
+
+	/**
+	 * Accumulates one pixel into region r
+	 * @param rgb	packed RGB color of the pixel
+	 */
+	public void addPixel(int r, int x, int y, int rgb) {
+		count[r]++;
+		if (x < minX[r]) minX[r] = x;
+		if (x > maxX[r]) maxX[r] = x;
+		if (y < minY[r]) minY[r] = y;
+		if (y > maxY[r]) maxY[r] = y;
+		sumX[r] += x; sumY[r] += y;
+		sumR[r] += (rgb >> 16) & 0xff; sumG[r] += (rgb >> 8) & 0xff; sumB[r] += rgb & 0xff;
+	}
+
+	/**
+	 * Folds region "from" into region "into"; "from" is left as is and should be dropped by compact
+	 */
+	public void merge(int into, int from) {
+		count[into] += count[from];
+		minX[into] = Math.min(minX[into], minX[from]); minY[into] = Math.min(minY[into], minY[from]);
+		maxX[into] = Math.max(maxX[into], maxX[from]); maxY[into] = Math.max(maxY[into], maxY[from]);
+		sumX[into] += sumX[from]; sumY[into] += sumY[from];
+		sumR[into] += sumR[from]; sumG[into] += sumG[from]; sumB[into] += sumB[from];
+	}
+
+	/**
+	 * Appends all of other's regions to this table, in order
+	 * @return the index the first of other's regions got here
+	 */
+	public int append(RegionStats other) {
+		int base = size;
+		for (int r = 0; r < other.size; r++) {
+			int s = add();
+			target[s] = other.target[r];
+			count[s] = other.count[r];
+			minX[s] = other.minX[r]; minY[s] = other.minY[r];
+			maxX[s] = other.maxX[r]; maxY[s] = other.maxY[r];
+			sumX[s] = other.sumX[r]; sumY[s] = other.sumY[r];
+			sumR[s] = other.sumR[r]; sumG[s] = other.sumG[r]; sumB[s] = other.sumB[r];
+		}
+		return base;
+	}
+
+	/**
+	 * Moves the regions around to match a renumbering, dropping the ones that map to -1.
+	 * The renumbering must keep the surviving regions in their original order.
+	 * @param remap		remap[r] is r's new index, or -1 to drop it
+	 */
+	public void compact(int[] remap) {
+		int kept = 0;
+		for (int r = 0; r < size; r++) {
+			int s = remap[r];
+			if (s < 0) continue;
+			target[s] = target[r];
+			count[s] = count[r];
+			minX[s] = minX[r]; minY[s] = minY[r]; maxX[s] = maxX[r]; maxY[s] = maxY[r];
+			sumX[s] = sumX[r]; sumY[s] = sumY[r];
+			sumR[s] = sumR[r]; sumG[s] = sumG[r]; sumB[s] = sumB[r];
+			kept++;
+		}
+		size = kept;
+	}
+
+	/**
+	 * Doubles the capacity of every column
+	 */
+	private void grow() {
+		int n = count.length * 2;
+		count = Arrays.copyOf(count, n);
+		target = Arrays.copyOf(target, n);
+		minX = Arrays.copyOf(minX, n); minY = Arrays.copyOf(minY, n);
+		maxX = Arrays.copyOf(maxX, n); maxY = Arrays.copyOf(maxY, n);
+		sumX = Arrays.copyOf(sumX, n); sumY = Arrays.copyOf(sumY, n);
+		sumR = Arrays.copyOf(sumR, n); sumG = Arrays.copyOf(sumG, n); sumB = Arrays.copyOf(sumB, n);
+	}
+}
@@ -12,6 +12,7 @@ import javax.swing.*;
  */
 public class RegionsTest extends DrawingGUI {
 	private BufferedImage image;
+	private RegionFinder finder;
 
 	/**
 	 * Test your RegionFinder by passing an image filename and a color to find.
@@ -21,12 +22,29 @@ public class RegionsTest extends DrawingGUI {
 	public RegionsTest(String name, RegionFinder finder, Color targetColor) {
 		super(name, finder.getImage().getWidth(), finder.getImage().getHeight());
 
+		// Index the image's colors, so that clicking to find other colors doesn't rescan it.
+		this.finder = finder;
+		finder.indexColors();
+
 		// Do the region finding and recolor the image.
 		finder.findRegions(targetColor);
 		finder.recolorImage();
 		image = finder.getRecoloredImage();
 	}
 
+	/**
+	 * Finds and recolors the regions of the clicked pixel's (original) color
+	 */
+	@Override
+	public void handleMousePress(int x, int y) {
+		Color targetColor = new Color(finder.getImage().getRGB(x, y));
+		finder.findRegions(targetColor);
+		finder.recolorImage();
+		image = finder.getRecoloredImage();
+		System.out.println(targetColor + ": " + finder.getNumRegions() + " regions");
+		repaint();
+	}
+
 	@Override
 	public void draw(Graphics g) {
 		g.drawImage(image, 0, 0, null);
@@ -0,0 +1,108 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Per-stage timing: keeps the durations of the last window samples of each named stage (e.g., "match", "grow")
+ * and reports their median, 99th percentile, and max. Recording is a clock read and an array store;
+ * the percentiles are only worked out when asked for.
+ * Code that can be timed takes a StageTimer that is null when timing is off, so then it only costs a null check.
+ *
+ * @author Paige Harris and Cha Krupka, Dartmouth CS10, Spring 2022
+ */
+public class StageTimer {
+	/**
+	 * The most recent samples of one stage, in a ring
+	 */
+	private static class Stage {
+		long[] nanos;
+		int next = 0;                                       // where the next sample goes
+		int count = 0;                                      // how many samples are in the ring
+		Stage(int window) {
+			nanos = new long[window];
+		}
+	}
+
+	private final int window;                               // how many recent samples of each stage to keep
+	private final Map<String, Stage> stages = new LinkedHashMap<String, Stage>();   // in order of first use
+
+	public StageTimer() {
+		this(512);
+	}
+
+	public StageTimer(int window) {
+		this.window = window;
+	}
+
+	/**
+	 * Returns the current time, to later pass to record
+	 */
+	public static long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records a sample of the stage, from start until now
+	 * @return now, so the next stage can start from it
+	 */
+	public long record(String stage, long start) {
+		long now = System.nanoTime();
+		add(stage, now - start);
+		return now;
+	}
+
+	/**
+	 * Records a sample of the stage
+	 */
+	public synchronized void add(String stage, long nanos) {
+		Stage s = stages.get(stage);
+		if (s == null) {
+			s = new Stage(window);
+			stages.put(stage, s);
+		}
+		s.nanos[s.next] = nanos;
+		s.next = (s.next + 1) % window;
+		if (s.count < window) s.count++;
+	}
+
+	/**
+	 * Returns the median, 99th percentile, and max of the stage's recent samples, in milliseconds;
+	 * null if it has none
+	 */
+	public synchronized double[] getMillis(String stage) {
+		Stage s = stages.get(stage);
+		if (s == null || s.count == 0) return null;
+		long[] sorted = Arrays.copyOf(s.nanos, s.count);
+		Arrays.sort(sorted);
+		return new double[] { sorted[(s.count - 1) / 2] / 1e6, sorted[(int) Math.ceil(0.99 * s.count) - 1] / 1e6,
+				sorted[s.count - 1] / 1e6 };
+	}
+
+	/**
+	 * Returns one line per stage: name, median, 99th percentile, and max milliseconds
+	 */
+	public synchronized String[] getLines() {
+		String[] lines = new String[stages.size()];
+		int i = 0;
+		for (String stage : stages.keySet()) {
+			double[] ms = getMillis(stage);
+			lines[i++] = String.format(Locale.ROOT, "%-8s p50 %6.2f  p99 %6.2f  max %6.2f ms", stage, ms[0], ms[1], ms[2]);
+		}
+		return lines;
+	}
+
+	/**
+	 * Forgets all the samples
+	 */
+	public synchronized void clear() {
+		stages.clear();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		for (String line : getLines()) text.append(line).append('\n');
+		return text.toString();
+	}
+}
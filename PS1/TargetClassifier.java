@@ -0,0 +1,75 @@
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * Classifies pixels against several target colors at once: each pixel goes to the nearest target
+ * it is within that target's threshold of, or to none.
+ * Colors are bucketed 5 bits per channel; each bucket knows which targets' spheres reach into it,
+ * so most pixels are rejected with one table lookup and the rest only test the few targets that could match,
+ * keeping the cost per pixel nearly flat as targets are added.
+ *
+ * @author Paige Harris and Cha Krupka, Dartmouth CS10, Spring 2022
+ */
+public class TargetClassifier {
+	private final int[] targets;                            // packed RGB of each target
+	private final int[] limits;                             // squared threshold of each target
+	private final int[] bucketStart = new int[ColorBucketIndex.numBuckets + 1];	// candidates of bucket b are candidates[bucketStart[b]..bucketStart[b+1])
+	private byte[] candidates;                              // target indices, bucket by bucket
+
+	/**
+	 * @param colors			target colors (at most 127)
+	 * @param maxColorDiffs		how far (Euclidean RGB distance) a pixel may be from each target to match it
+	 */
+	public TargetClassifier(Color[] colors, int[] maxColorDiffs) {
+		if (colors.length > 127) throw new IllegalArgumentException("too many targets: " + colors.length);
+		targets = new int[colors.length];
+		limits = new int[colors.length];
+		for (int t = 0; t < colors.length; t++) {
+			targets[t] = colors[t].getRGB();
+			limits[t] = maxColorDiffs[t] * maxColorDiffs[t];
+		}
+		// Count, then list, the targets whose sphere reaches into each bucket's cube of colors
+		byte[] list = new byte[64];
+		int n = 0;
+		for (int b = 0; b < ColorBucketIndex.numBuckets; b++) {
+			bucketStart[b] = n;
+			for (int t = 0; t < targets.length; t++) {
+				if (ColorBucketIndex.nearSq(targets[t], b) <= limits[t]) {
+					if (n == list.length) list = Arrays.copyOf(list, n * 2);
+					list[n++] = (byte) t;
+				}
+			}
+		}
+		bucketStart[ColorBucketIndex.numBuckets] = n;
+		candidates = Arrays.copyOf(list, n);
+	}
+
+	public int getNumTargets() {
+		return targets.length;
+	}
+
+	/**
+	 * Classifies the first n pixels
+	 * @param rgb		packed RGB pixels
+	 * @param classes	filled in with 1 + the index of each pixel's target, or 0 if it matches none
+	 */
+	public void classify(int[] rgb, int n, byte[] classes) {
+		for (int i = 0; i < n; i++) {
+			int c = rgb[i];
+			int bucket = LabColorMatcher.index(c);
+			int best = 0, bestD = Integer.MAX_VALUE;
+			for (int k = bucketStart[bucket]; k < bucketStart[bucket + 1]; k++) {
+				int t = candidates[k];
+				int dr = ((c >> 16) & 0xff) - ((targets[t] >> 16) & 0xff);
+				int dg = ((c >> 8) & 0xff) - ((targets[t] >> 8) & 0xff);
+				int db = (c & 0xff) - (targets[t] & 0xff);
+				int d = dr * dr + dg * dg + db * db;
+				if (d <= limits[t] && d < bestD) {
+					best = t + 1;
+					bestD = d;
+				}
+			}
+			classes[i] = (byte) best;
+		}
+	}
+}
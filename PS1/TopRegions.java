@@ -0,0 +1,97 @@
+import java.awt.*;
+import java.util.ArrayList;
+
+/**
+ * A RegionConsumer that keeps only the k largest regions it is given, largest first, copying each into a
+ * buffer of its own (reused from search to search) and dropping the rest right away. With k = 1 it is
+ * just the largest region. Optionally stops the search as soon as a region is good enough, i.e., has at least
+ * stopAt pixels, when the caller doesn't need the very largest.
+ *
+ * @author Paige Harris and Cha Krupka, Dartmouth CS10, Spring 2022
+ */
+public class TopRegions implements RegionConsumer {
+	private final int k;                                    // how many regions to keep
+	private int stopAt = Integer.MAX_VALUE;                 // a region at least this big ends the search
+	private int[][] regions;                                // kept regions' pixel indices, largest first
+	private int[] sizes;                                    // how many pixels of each kept region are in use
+	private int count = 0;                                  // how many regions are kept
+	private int width;                                      // image width of the last region given
+
+	public TopRegions(int k) {
+		if (k < 1) throw new IllegalArgumentException("k must be at least 1: " + k);
+		this.k = k;
+		regions = new int[k][];
+		sizes = new int[k];
+	}
+
+	/**
+	 * Keeps just the largest region
+	 */
+	public static TopRegions largest() {
+		return new TopRegions(1);
+	}
+
+	/**
+	 * Sets how big a region has to be to stop the search once found
+	 */
+	public void setStopAt(int stopAt) {
+		this.stopAt = stopAt;
+	}
+
+	/**
+	 * Forgets the kept regions, e.g., before the next frame's search (keeping their buffers)
+	 */
+	public void clear() {
+		count = 0;
+	}
+
+	public boolean accept(int[] pixels, int from, int to, int width) {
+		this.width = width;
+		int n = to - from;
+		if (count == k && n <= sizes[k - 1]) return n < stopAt;	// smaller than all kept
+
+		// insert in order of size (after equal ones, so earlier regions win ties), recycling the dropped buffer
+		int pos = count < k ? count++ : k - 1;
+		int[] buffer = regions[pos];
+		while (pos > 0 && sizes[pos - 1] < n) {
+			regions[pos] = regions[pos - 1];
+			sizes[pos] = sizes[pos - 1];
+			pos--;
+		}
+		if (buffer == null || buffer.length < n) buffer = new int[n];
+		System.arraycopy(pixels, from, buffer, 0, n);
+		regions[pos] = buffer;
+		sizes[pos] = n;
+		return n < stopAt;
+	}
+
+	/**
+	 * Returns how many regions are kept (at most k)
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Returns how many pixels are in kept region i (0 is the largest)
+	 */
+	public int getSize(int i) {
+		return sizes[i];
+	}
+
+	/**
+	 * Returns the pixel indices of kept region i; only the first getSize(i) are in use
+	 */
+	public int[] getPixels(int i) {
+		return regions[i];
+	}
+
+	/**
+	 * Returns kept region i as points
+	 */
+	public ArrayList<Point> getPoints(int i) {
+		ArrayList<Point> points = new ArrayList<Point>(sizes[i]);
+		for (int j = 0; j < sizes[i]; j++) points.add(new Point(regions[i][j] % width, regions[i][j] / width));
+		return points;
+	}
+}
@@ -4,6 +4,10 @@ import javax.swing.*;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * Using a quadtree for collision detection
@@ -18,7 +22,9 @@ public class CollisionGUI extends DrawingGUI {
 	private static final int width=800, height=600;		// size of the universe
 
 	private List<Blob> blobs;							// all the blobs
-	private List<Blob> colliders;						// the blobs who collided at this step
+	private PointQuadtree<Blob> tree;					// all the blobs by position, built anew each step; null if none
+	private Set<Blob> colliders;						// the blobs who collided at this step (concurrent, by identity)
+	private static final int blobsPerTask = 1024;		// how many blobs' collisions each parallel task checks
 	private char blobType = 'b';						// what type of blob to create
 	private char collisionHandler = 'c';				// when there's a collision, 'c'olor them, or 'd'estroy them
 	private int delay = 100;							// timer control
@@ -36,15 +42,18 @@ public class CollisionGUI extends DrawingGUI {
 	 * Adds an blob of the current blobType at the location
 	 */
 	private void add(int x, int y) {
+		Blob blob;
 		if (blobType=='b') {
-			blobs.add(new Bouncer(x,y,width,height));
+			blob = new Bouncer(x,y,width,height);
 		}
 		else if (blobType=='w') {
-			blobs.add(new Wanderer(x,y));
+			blob = new Wanderer(x,y);
 		}
 		else {
 			System.err.println("Unknown blob type "+blobType);
+			return;
 		}
+		blobs.add(blob);
 	}
 
 	/**
@@ -102,20 +111,44 @@ public class CollisionGUI extends DrawingGUI {
 	}
 
 	/**
-	 * Sets colliders to include all blobs in contact with another blob
+	 * Sets colliders to include all blobs in contact with another blob.
+	 * The blobs are checked in chunks in parallel (the tree isn't changed meanwhile, so it's safe to share);
+	 * Geometry's test counts are only approximate when there's more than one chunk, as they aren't synchronized.
 	 */
 	private void findColliders() {
-		// Create the tree
-		PointQuadtree<Blob> tree = new PointQuadtree<>(blobs.get(0), 0, 0, 800, 600);
-		for (int i = 1; i < blobs.size(); i++) {
-			tree.insert(blobs.get(i));
+		final Set<Blob> found = ConcurrentHashMap.newKeySet();	// Blob has identity equals and hashCode
+		final int numTasks = (blobs.size() + blobsPerTask - 1) / blobsPerTask;
+		IntStream tasks = IntStream.range(0, numTasks);
+		if (numTasks > 1) tasks = tasks.parallel();
+		tasks.forEach(new IntConsumer() {
+			public void accept(int task) {
+				// For each blob in the chunk, see if anybody else collided with it
+				ColliderVisitor visitor = new ColliderVisitor(found);
+				int end = Math.min(blobs.size(), (task + 1) * blobsPerTask);
+				for (int i = task * blobsPerTask; i < end; i++) {
+					Blob b = blobs.get(i);
+					visitor.self = b;
+					tree.visitInCircle(b.getX(), b.getY(), b.getR()*2, visitor);
+				}
+			}
+		});
+		colliders = found;
+	}
+
+	/**
+	 * Adds each blob it visits, other than self, to the colliders
+	 */
+	private static class ColliderVisitor implements PointVisitor<Blob> {
+		private final Set<Blob> found;	// where the colliders go
+		Blob self;						// the blob whose surroundings are being searched
+
+		ColliderVisitor(Set<Blob> found) {
+			this.found = found;
 		}
 
-		// For each blob, see if anybody else collided with it
-		colliders = new ArrayList<>();
-		for (Blob b : blobs) {
-			colliders.addAll(tree.findInCircle(b.getX(), b.getY(), b.getR()*2));
-			colliders.remove(b);
+		public boolean visit(Blob other) {
+			if (other != self) found.add(other);
+			return true;
 		}
 	}
 
@@ -127,7 +160,9 @@ public class CollisionGUI extends DrawingGUI {
 		for (Blob blob : blobs) {
 			blob.step();
 		}
-		// Check for collisions
+		// Check for collisions, in a tree balanced however the blobs are clustered now
+		// (cheaper than relocating each blob in a tree kept across steps, since they all move every step)
+		tree = PointQuadtree.build(blobs, 0, 0, width, height);
 		if (blobs.size() > 0) {
 			findColliders();
 			if (collisionHandler=='d') {
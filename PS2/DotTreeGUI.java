@@ -1,4 +1,5 @@
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.*;
@@ -20,7 +21,7 @@ public class DotTreeGUI extends DrawingGUI {
 			Color.BLUE, Color.MAGENTA}; 				// to color different levels differently
 
 	private PointQuadtree<Dot> tree = null;			// holds the dots
-	private char mode = 'a';						// 'a': adding; 'q': querying with the mouse
+	private char mode = 'a';						// 'a': adding; 'q': querying with the mouse; 'n': picking the nearest dot
 	private int mouseX, mouseY;						// current mouse location, when querying
 	private int mouseRadius = 10;					// circle around mouse location, for querying
 	private boolean trackMouse = false;				// if true, then print out where the mouse is as it moves
@@ -62,6 +63,10 @@ public class DotTreeGUI extends DrawingGUI {
 			// Set "found" to what tree says is near the mouse press
 			found = tree.findInCircle(mouseX, mouseY, mouseRadius);
 		}
+		else if (mode == 'n') {
+			// Set "found" to the dot nearest the mouse press
+			if (tree != null) found = tree.kNearest(x, y, 1);
+		}
 		else {
 			System.out.println("clicked at "+x+","+y);
 		}
@@ -98,9 +103,121 @@ public class DotTreeGUI extends DrawingGUI {
 			errs++;
 			System.err.println(which+": wrong # hits, got "+num+" but expected "+expectedHits);
 		}
+		// countInCircle should make the same tests, and count the same hits
+		Geometry.resetNumInCircleTests();
+		Geometry.resetNumCircleRectangleTests();
+		int count = tree.countInCircle(x, y, r);
+		if (count != expectedHits || Geometry.getNumCircleRectangleTests() != expectedCircleRectangle
+				|| Geometry.getNumInCircleTests() != expectedInCircle) {
+			errs++;
+			System.err.println(which+": countInCircle got "+count+" hits with "+Geometry.getNumCircleRectangleTests()+
+					" circle-rectangle and "+Geometry.getNumInCircleTests()+" in circle");
+		}
+		return errs;
+	}
+
+	/**
+	 * A simple testing procedure for visitInRectangle and countInRectangle, making sure actual is expected,
+	 * and printing a message if not
+	 * @param x1	query rectangle min x
+	 * @param y1	query rectangle min y
+	 * @param x2	query rectangle max x
+	 * @param y2	query rectangle max y
+	 * @param expectedRectangleRectangle	how many times Geometry.rectanglesIntersect is expected to be called
+	 * @param expectedInRectangle			how many times Geometry.pointInRectangle is expected to be called
+	 * @param expectedHits					how many points are expected to be found
+	 * @return  0 if passed; 1 if failed
+	 */
+	private int testRectangle(int x1, int y1, int x2, int y2, int expectedRectangleRectangle, int expectedInRectangle,
+			int expectedHits) {
+		Geometry.resetNumRectangleRectangleTests();
+		Geometry.resetNumInRectangleTests();
+		int errs = 0;
+		final int[] visited = {0};
+		tree.visitInRectangle(x1, y1, x2, y2, new PointVisitor<Dot>() {
+			public boolean visit(Dot d) {
+				visited[0]++;
+				return true;
+			}
+		});
+		String which = "("+x1+","+y1+")-("+x2+","+y2+")";
+		if (Geometry.getNumRectangleRectangleTests() != expectedRectangleRectangle) {
+			errs++;
+			System.err.println(which+": wrong # rectangle-rectangle, got "+Geometry.getNumRectangleRectangleTests()+
+					" but expected "+expectedRectangleRectangle);
+		}
+		if (Geometry.getNumInRectangleTests() != expectedInRectangle) {
+			errs++;
+			System.err.println(which+": wrong # in rectangle, got "+Geometry.getNumInRectangleTests()+
+					" but expected "+expectedInRectangle);
+		}
+		if (visited[0] != expectedHits) {
+			errs++;
+			System.err.println(which+": wrong # hits, got "+visited[0]+" but expected "+expectedHits);
+		}
+		// countInRectangle should make the same tests, and count the same hits
+		Geometry.resetNumRectangleRectangleTests();
+		Geometry.resetNumInRectangleTests();
+		int count = tree.countInRectangle(x1, y1, x2, y2);
+		if (count != expectedHits || Geometry.getNumRectangleRectangleTests() != expectedRectangleRectangle
+				|| Geometry.getNumInRectangleTests() != expectedInRectangle) {
+			errs++;
+			System.err.println(which+": countInRectangle got "+count+" hits with "+Geometry.getNumRectangleRectangleTests()+
+					" rectangle-rectangle and "+Geometry.getNumInRectangleTests()+" in rectangle");
+		}
+		// a visitor returning false should end the query at the first hit
+		visited[0] = 0;
+		boolean finished = tree.visitInRectangle(x1, y1, x2, y2, new PointVisitor<Dot>() {
+			public boolean visit(Dot d) {
+				visited[0]++;
+				return false;
+			}
+		});
+		if (visited[0] != Math.min(expectedHits, 1) || finished != (expectedHits == 0)) {
+			errs++;
+			System.err.println(which+": stopping visitor saw "+visited[0]+" hits, and the query "+
+					(finished ? "finished" : "stopped"));
+		}
 		return errs;
 	}
 	
+	/**
+	 * A simple testing procedure for kNearest, making sure actual is expected, and printing a message if not
+	 * @param x		query x coordinate
+	 * @param y		query y coordinate
+	 * @param k		how many points to find
+	 * @param expectedRectangleDistances	how many times Geometry.rectangleDistanceSquared is expected to be called
+	 * @param expectedPointDistances		how many times Geometry.pointDistanceSquared is expected to be called
+	 * @param expected						the points expected to be found, closest first, e.g., "[(150.0,450.0)]"
+	 * @return  0 if passed; 1 if failed
+	 */
+	private int testNearest(int x, int y, int k, int expectedRectangleDistances, int expectedPointDistances, String expected) {
+		Geometry.resetNumRectangleDistances();
+		Geometry.resetNumPointDistances();
+		int errs = 0;
+		String got = tree.kNearest(x, y, k).toString();
+		String which = "("+x+","+y+")#"+k;
+		if (Geometry.getNumRectangleDistances() != expectedRectangleDistances) {
+			errs++;
+			System.err.println(which+": wrong # rectangle distances, got "+Geometry.getNumRectangleDistances()+
+					" but expected "+expectedRectangleDistances);
+		}
+		if (Geometry.getNumPointDistances() != expectedPointDistances) {
+			errs++;
+			System.err.println(which+": wrong # point distances, got "+Geometry.getNumPointDistances()+
+					" but expected "+expectedPointDistances);
+		}
+		if (!got.equals(expected)) {
+			errs++;
+			System.err.println(which+": wrong nearest, got "+got+" but expected "+expected);
+		}
+		if (k == 1 && !tree.nearest(x, y).toString().equals(expected.substring(1, expected.length()-1))) {
+			errs++;
+			System.err.println(which+": nearest disagrees with kNearest, got "+tree.nearest(x, y));
+		}
+		return errs;
+	}
+
 	/**
 	 * test tree 0 -- first three points from figure in handout
 	 * hardcoded point locations for 800x600
@@ -118,6 +235,10 @@ public class DotTreeGUI extends DrawingGUI {
 		bad += testFind(150,450,200,3,3,2);	// rect for all; circle for all; find B, C
 		bad += testFind(140,440,10,3,2,0);	// rect for all; circle for A,B; find none
 		bad += testFind(750,550,10,2,1,0);	// rect for A,B; circle for A; find none
+		bad += testNearest(160,440,1,3,3,"[(150.0,450.0)]");		// rect for all; point for all; find B
+		bad += testNearest(700,100,1,3,2,"[(400.0,300.0)]");		// rect for all; point for A,B; find A
+		bad += testNearest(240,560,2,3,3,"[(250.0,550.0), (150.0,450.0)]");	// rect for all; point for all; find C, B
+		bad += testNearest(0,0,5,3,3,"[(150.0,450.0), (400.0,300.0), (250.0,550.0)]");	// rect for all; point for all; find all
 		if (bad==0) System.out.println("test 0 passed!");
 	}
 
@@ -146,6 +267,14 @@ public class DotTreeGUI extends DrawingGUI {
 		bad += testFind(300,400,15,10,6,2);	// rect for A [D [G F H]] [E] [B [C]] [K [L]]; circle for A,D,E,B,K,L; find A,L
 		bad += testFind(495,225,50,10,6,3);	// rect for A [D [G F H [I [J]]]] [E] [B] [K]; circle for A,D,G,H,I,J; find H,I,J
 		bad += testFind(0,0,900,12,12,12);	// rect for all; circle for all; find all
+		bad += testRectangle(140,440,160,460,6,3,1);	// rect for A [D] [E] [B [C]] [K]; point for A, B, C; find B
+		bad += testRectangle(460,200,530,260,10,6,3);	// rect for A [D [G F H [I [J]]]] [E] [B] [K]; point for A,D,G,H,I,J; find H,I,J
+		bad += testRectangle(600,50,700,100,8,3,0);	// rect for A [D [G F H]] [E] [B] [K]; point for A, D, G; find none
+		bad += testRectangle(0,0,800,600,12,12,12);	// rect for all; point for all; find all
+		bad += testNearest(480,240,1,10,4,"[(475.0,250.0)]");	// rect for A [D [G F H [I [J]]]] [E] [B] [K]; point for A, D, H, I; find H
+		bad += testNearest(305,404,2,10,6,"[(300.0,400.0), (310.0,410.0)]");	// rect for A [D [G F H]] [E] [B [C]] [K [L]]; point for A, K, L, D, B, E; find A, L
+		bad += testNearest(400,300,3,11,10,"[(475.0,250.0), (450.0,200.0), (490.0,215.0)]");	// rect for all but C; point for all but B, C; find H, D, J
+		bad += testNearest(799,599,1,6,3,"[(700.0,550.0)]");	// rect for A [D] [E] [B] [K [L]]; point for A, K, L; find K
 		if (bad==0) System.out.println("test 1 passed!");
 	}
 
@@ -171,12 +300,48 @@ public class DotTreeGUI extends DrawingGUI {
 	}
 
 	/**
-	 * DrawingGUI method, here toggling the mode between 'a' and 'q'
+	 * test tree 3 -- test 1's points all moved, and then relocated one by one, as a simulation updates its tree
+	 * (so some subtrees are rebuilt around points that have moved but not been relocated yet)
+	 * hardcoded point locations for 800x600
+	 */
+	private void test3() {
+		found = null;
+		List<Dot> dots = new ArrayList<Dot>();
+		int[][] xys = {{300,400}, {150,450}, {250,550}, {450,200}, {200,250}, {350,175},
+				{500,125}, {475,250}, {525,225}, {490,215}, {700,550}, {310,410}};	// A-L, as in test 1
+		for (int[] xy : xys) dots.add(new Dot(xy[0], xy[1]));
+		tree = new PointQuadtree<Dot>(dots.get(0), 0,0,800,600);
+		for (int i = 1; i < dots.size(); i++) tree.insert(dots.get(i));
+		double[] oldX = new double[dots.size()], oldY = new double[dots.size()];
+		for (int i = 0; i < dots.size(); i++) {
+			Dot d = dots.get(i);
+			oldX[i] = d.getX(); oldY[i] = d.getY();
+			d.setX(d.getX() >= 400 ? d.getX() - 200 : d.getX() + 100);	// e.g., D to (250,200), out of A's quadrant 1
+		}
+		int bad = 0;
+		for (int i = 0; i < dots.size(); i++) {
+			if (!tree.relocate(dots.get(i), oldX[i], oldY[i])) {
+				bad++;
+				System.err.println(dots.get(i)+": not found at old position ("+oldX[i]+","+oldY[i]+")");
+			}
+		}
+		bad += testFind(0,0,900,12,12,12);	// rect for all; circle for all; find all
+		for (Dot d : dots) {
+			if (!tree.findInCircle(d.getX(), d.getY(), 1).contains(d)) {
+				bad++;
+				System.err.println(d+": not found at its new position");
+			}
+		}
+		if (bad==0) System.out.println("test 3 passed!");
+	}
+
+	/**
+	 * DrawingGUI method, here toggling the mode between 'a', 'q', and 'n'
 	 * and increasing/decreasing mouseRadius via +/-
 	 */
 	@Override
 	public void handleKeyPress(char key) {
-		if (key=='a' || key=='q') mode = key;
+		if (key=='a' || key=='q' || key=='n') mode = key;
 		else if (key=='+') {
 			mouseRadius += 10;
 		}
@@ -196,6 +361,9 @@ public class DotTreeGUI extends DrawingGUI {
 		else if (key=='2') {
 			test2();
 		}
+		else if (key=='3') {
+			test3();
+		}
 		repaint();
 	}
 	
@@ -216,6 +384,12 @@ public class DotTreeGUI extends DrawingGUI {
 				}
 			}
 		}
+		else if (mode == 'n' && found != null) {
+			g.setColor(Color.BLACK);
+			for (Dot d : found) {
+				g.drawOval((int)d.getX()-2*dotRadius, (int)d.getY()-2*dotRadius, 4*dotRadius, 4*dotRadius);
+			}
+		}
 	}
 
 	/**
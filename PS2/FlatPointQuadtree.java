@@ -0,0 +1,206 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A point quadtree with the same insert, findInCircle, and allPoints behavior as PointQuadtree, but with its
+ * nodes stored in parallel arrays rather than as objects: node i's anchor coordinates are x[i] and y[i], its
+ * element is elements[i], and its children are node indices in children[4*i .. 4*i+3] (0 for none, since the
+ * root, node 0, is nobody's child). Nodes' rectangles aren't stored, but worked out from their ancestors'
+ * anchors on the way down, as insert does. That's about 36 bytes per point (plus the elements themselves),
+ * with queries walking arrays instead of chasing references, and no recursion, so deep trees are fine too.
+ * Queries share a work stack, so a tree shouldn't be queried from several threads at once.
+ *
+ * @author Paige Harris and Cha Krupka, Dartmouth CS10, Spring 2022
+ */
+public class FlatPointQuadtree<E extends Point2D> {
+	private final int x1, y1, x2, y2;						// the root's rectangle
+	private double[] x = new double[16], y = new double[16];	// anchor coordinates of each node
+	private Object[] elements = new Object[16];				// the point anchoring each node
+	private int[] children = new int[4 * 16];				// children of node i at 4*i + quadrant-1; 0 if none
+	private int size = 0;									// how many nodes (points) are in use
+	private int[] stack = new int[5 * 64];					// query work list: node and rectangle, 5 ints each
+
+	/**
+	 * Initializes an empty tree covering the rectangle
+	 */
+	public FlatPointQuadtree(int x1, int y1, int x2, int y2) {
+		this.x1 = x1; this.y1 = y1; this.x2 = x2; this.y2 = y2;
+	}
+
+	/**
+	 * Initializes a tree holding the point in the rectangle
+	 */
+	public FlatPointQuadtree(E point, int x1, int y1, int x2, int y2) {
+		this(x1, y1, x2, y2);
+		insert(point);
+	}
+
+	/**
+	 * Returns the root's point, null if the tree is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public E getPoint() {
+		return size > 0 ? (E) elements[0] : null;
+	}
+
+	/**
+	 * Returns the number of points in the tree
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Makes room for n nodes up front, e.g., before inserting many points
+	 */
+	public void ensureCapacity(int n) {
+		if (n <= x.length) return;
+		x = Arrays.copyOf(x, n);
+		y = Arrays.copyOf(y, n);
+		elements = Arrays.copyOf(elements, n);
+		children = Arrays.copyOf(children, 4 * n);
+	}
+
+	/**
+	 * Inserts the point into the tree
+	 * @param p2 point to be added
+	 */
+	public void insert(E p2) {
+		if (size == x.length) ensureCapacity(x.length + (x.length >> 1));
+		int node = size++;
+		x[node] = p2.getX();
+		y[node] = p2.getY();
+		elements[node] = p2;
+		if (node == 0) return;
+		// walk down from the root to the empty child spot where the point belongs
+		int at = 0;
+		while (true) {
+			int slot = 4 * at + quadrant(x[node], y[node], x[at], y[at]) - 1;
+			if (children[slot] == 0) {
+				children[slot] = node;
+				return;
+			}
+			at = children[slot];
+		}
+	}
+
+	/**
+	 * Renumbers the nodes in depth-first order, so that each subtree occupies a contiguous run of the arrays
+	 * and queries walk memory mostly forwards. Worth doing once after inserting many points in scattered order
+	 * (which leaves nodes in insertion order); doesn't change what any query returns.
+	 */
+	public void compact() {
+		if (size == 0) return;
+		double[] nx = new double[size], ny = new double[size];
+		Object[] ne = new Object[size];
+		int[] nc = new int[4 * size];
+		int[] pending = new int[size];						// where in nc each stacked node's new index goes
+		int top = 0, next = 0;
+		stack[top] = 0;
+		pending[top++] = -1;
+		while (top > 0) {
+			int old = stack[--top], slot = pending[top];
+			int node = next++;
+			if (slot >= 0) nc[slot] = node;
+			nx[node] = x[old];
+			ny[node] = y[old];
+			ne[node] = elements[old];
+			for (int q = 3; q >= 0; q--) {					// pushed last to first, so quadrant 1 comes out next
+				int child = children[4 * old + q];
+				if (child != 0) {
+					if (top == stack.length) stack = Arrays.copyOf(stack, 2 * top);
+					stack[top] = child;
+					pending[top++] = 4 * node + q;
+				}
+			}
+		}
+		x = nx;
+		y = ny;
+		elements = ne;
+		children = nc;
+	}
+
+	/**
+	 * Returns which quadrant (1-4) of the anchor (ax,ay) the point (px,py) goes in
+	 */
+	private static int quadrant(double px, double py, double ax, double ay) {
+		if (px >= ax && py <= ay) return 1;
+		if (px < ax && py < ay) return 2;
+		if (px <= ax && py >= ay) return 3;
+		return 4;
+	}
+
+	/**
+	 * Builds a list of all the points in the tree, in the same order as PointQuadtree's allPoints
+	 * (each node after its children)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<E> allPoints() {
+		// visit each node before its children in reverse order, then reverse that
+		List<E> list = new ArrayList<E>(size);
+		if (size == 0) return list;
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			list.add((E) elements[node]);
+			for (int q = 0; q < 4; q++) {
+				int child = children[4 * node + q];
+				if (child != 0) {
+					if (top == stack.length) stack = Arrays.copyOf(stack, 2 * top);
+					stack[top++] = child;
+				}
+			}
+		}
+		for (int i = 0, j = list.size() - 1; i < j; i++, j--) {
+			E t = list.get(i);
+			list.set(i, list.get(j));
+			list.set(j, t);
+		}
+		return list;
+	}
+
+	/**
+	 * Uses the quadtree to find all points within the circle, in the same order as PointQuadtree's findInCircle
+	 * (making the same Geometry tests)
+	 * @param cx	circle center x
+	 * @param cy  	circle center y
+	 * @param cr  	circle radius
+	 * @return    	the points in the circle (and the qt's rectangle)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<E> findInCircle(double cx, double cy, double cr) {
+		List<E> list = new ArrayList<E>();
+		if (size == 0) return list;
+		int top = push(0, 0, x1, y1, x2, y2);
+		while (top > 0) {
+			top -= 5;
+			int node = stack[top], nx1 = stack[top + 1], ny1 = stack[top + 2], nx2 = stack[top + 3], ny2 = stack[top + 4];
+			if (!Geometry.circleIntersectsRectangle(cx, cy, cr, nx1, ny1, nx2, ny2)) continue;
+			if (Geometry.pointInCircle(x[node], y[node], cx, cy, cr)) list.add((E) elements[node]);
+			// children are pushed last to first so they're visited first to last, with insert's rectangles
+			int ax = (int) x[node], ay = (int) y[node];
+			int c = children[4 * node + 3];
+			if (c != 0) top = push(top, c, ax, ay, nx2, ny2);
+			c = children[4 * node + 2];
+			if (c != 0) top = push(top, c, nx1, ay, ax, ny2);
+			c = children[4 * node + 1];
+			if (c != 0) top = push(top, c, nx1, ny1, ax, ay);
+			c = children[4 * node];
+			if (c != 0) top = push(top, c, ax, ny1, nx2, ay);
+		}
+		return list;
+	}
+
+	/**
+	 * Pushes a node and its rectangle onto the query stack
+	 * @return the new top
+	 */
+	private int push(int top, int node, int nx1, int ny1, int nx2, int ny2) {
+		if (top + 5 > stack.length) stack = Arrays.copyOf(stack, 2 * stack.length);
+		stack[top] = node;
+		stack[top + 1] = nx1; stack[top + 2] = ny1; stack[top + 3] = nx2; stack[top + 4] = ny2;
+		return top + 5;
+	}
+}
@@ -8,6 +8,10 @@
 public class Geometry {
 	private static int numInCircleTests = 0;			// keeps track of how many times pointInCircle has been called
 	private static int numCircleRectangleTests = 0;		// keeps track of how many times circleIntersectsRectangle has been called
+	private static int numPointDistances = 0;			// keeps track of how many times pointDistanceSquared has been called
+	private static int numRectangleDistances = 0;		// keeps track of how many times rectangleDistanceSquared has been called
+	private static int numInRectangleTests = 0;			// keeps track of how many times pointInRectangle has been called
+	private static int numRectangleRectangleTests = 0;	// keeps track of how many times rectanglesIntersect has been called
 		
 	public static int getNumInCircleTests() {
 		return numInCircleTests;
@@ -25,6 +29,38 @@ public class Geometry {
 		numCircleRectangleTests = 0;
 	}
 
+	public static int getNumPointDistances() {
+		return numPointDistances;
+	}
+
+	public static void resetNumPointDistances() {
+		numPointDistances = 0;
+	}
+
+	public static int getNumRectangleDistances() {
+		return numRectangleDistances;
+	}
+
+	public static void resetNumRectangleDistances() {
+		numRectangleDistances = 0;
+	}
+
+	public static int getNumInRectangleTests() {
+		return numInRectangleTests;
+	}
+
+	public static void resetNumInRectangleTests() {
+		numInRectangleTests = 0;
+	}
+
+	public static int getNumRectangleRectangleTests() {
+		return numRectangleRectangleTests;
+	}
+
+	public static void resetNumRectangleRectangleTests() {
+		numRectangleRectangleTests = 0;
+	}
+
 	/**
 	 * Returns whether or not the point is within the circle
 	 * @param px		point x coord
@@ -55,4 +91,63 @@ public class Geometry {
 		double closestY = Math.min(Math.max(cy, y1), y2);
 		return (cx-closestX)*(cx-closestX) + (cy-closestY)*(cy-closestY) <= cr*cr;
 	}
+
+	/**
+	 * Returns the squared distance between the points
+	 * @param px		first point x coord
+	 * @param py		first point y coord
+	 * @param qx		second point x coord
+	 * @param qy		second point y coord
+	 */
+	public static double pointDistanceSquared(double px, double py, double qx, double qy) {
+		numPointDistances++;
+		return (px-qx)*(px-qx) + (py-qy)*(py-qy);
+	}
+
+	/**
+	 * Returns the squared distance from the point to the closest point of the rectangle (0 if it's inside)
+	 * @param px	point x coord
+	 * @param py	point y coord
+	 * @param x1 	rectangle min x
+	 * @param y1  	rectangle min y
+	 * @param x2  	rectangle max x
+	 * @param y2  	rectangle max y
+	 */
+	public static double rectangleDistanceSquared(double px, double py, double x1, double y1, double x2, double y2) {
+		numRectangleDistances++;
+		double closestX = Math.min(Math.max(px, x1), x2);
+		double closestY = Math.min(Math.max(py, y1), y2);
+		return (px-closestX)*(px-closestX) + (py-closestY)*(py-closestY);
+	}
+
+	/**
+	 * Returns whether or not the point is within the rectangle (edges included)
+	 * @param px	point x coord
+	 * @param py	point y coord
+	 * @param x1 	rectangle min x
+	 * @param y1  	rectangle min y
+	 * @param x2  	rectangle max x
+	 * @param y2  	rectangle max y
+	 */
+	public static boolean pointInRectangle(double px, double py, double x1, double y1, double x2, double y2) {
+		numInRectangleTests++;
+		return px >= x1 && px <= x2 && py >= y1 && py <= y2;
+	}
+
+	/**
+	 * Returns whether or not the two rectangles overlap (touching edges count)
+	 * @param ax1	first rectangle min x
+	 * @param ay1	first rectangle min y
+	 * @param ax2	first rectangle max x
+	 * @param ay2	first rectangle max y
+	 * @param bx1	second rectangle min x
+	 * @param by1	second rectangle min y
+	 * @param bx2	second rectangle max x
+	 * @param by2	second rectangle max y
+	 */
+	public static boolean rectanglesIntersect(double ax1, double ay1, double ax2, double ay2,
+			double bx1, double by1, double bx2, double by2) {
+		numRectangleRectangleTests++;
+		return ax1 <= bx2 && bx1 <= ax2 && ay1 <= by2 && by1 <= ay2;
+	}
 }
@@ -0,0 +1,163 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A point-region (PR) quadtree: unlike PointQuadtree, nodes aren't anchored at points, but split their
+ * rectangle at its middle into four equal quadrants, and points are only kept in the leaves, up to a capacity
+ * per leaf. A leaf that overflows splits, unless it's already at the maximum depth (where only many points at
+ * nearly the same spot could pile up), so the tree's shape depends only on where the points are, not the order
+ * they were inserted in, and its depth is bounded. Good for dense clusters of points, like colliding blobs.
+ * Points are expected to be within the tree's rectangle; any outside it are kept in the nearest leaf, but
+ * queries may miss them.
+ *
+ * @author Paige Harris and Cha Krupka, Dartmouth CS10, Spring 2022
+ */
+public class PRQuadtree<E extends Point2D> {
+	private final double x1, y1, x2, y2;			// corners of the region
+	private final double midX, midY;				// where it splits
+	private final int capacity;						// how many points a leaf holds before splitting
+	private final int depthLeft;					// how many more times it may split below here
+	private List<E> points;							// the points, if a leaf; null otherwise
+	private PRQuadtree<E> c1, c2, c3, c4;			// children (upper right, upper left, lower left, lower right), if split
+	private int size = 0;							// how many points are in the region
+
+	/**
+	 * Initializes an empty tree over the rectangle, with leaves of up to 16 points and at most 20 levels
+	 */
+	public PRQuadtree(int x1, int y1, int x2, int y2) {
+		this(x1, y1, x2, y2, 16, 20);
+	}
+
+	/**
+	 * Initializes an empty tree over the rectangle
+	 * @param capacity	how many points a leaf holds before it splits, e.g., 8 to 64
+	 * @param maxDepth	how many levels the tree may have at most
+	 */
+	public PRQuadtree(double x1, double y1, double x2, double y2, int capacity, int maxDepth) {
+		if (capacity < 1) throw new IllegalArgumentException("capacity must be at least 1: " + capacity);
+		this.x1 = x1; this.y1 = y1; this.x2 = x2; this.y2 = y2;
+		this.midX = (x1 + x2) / 2;
+		this.midY = (y1 + y2) / 2;
+		this.capacity = capacity;
+		this.depthLeft = maxDepth - 1;
+		this.points = new ArrayList<E>(capacity);
+	}
+
+	/**
+	 * Returns whether this node holds points itself (rather than having children)
+	 */
+	public boolean isLeaf() {
+		return points != null;
+	}
+
+	/**
+	 * Returns the child (if any) at the given quadrant, 1-4
+	 * @param quadrant	1 through 4
+	 */
+	public PRQuadtree<E> getChild(int quadrant) {
+		if (quadrant==1) return c1;
+		if (quadrant==2) return c2;
+		if (quadrant==3) return c3;
+		if (quadrant==4) return c4;
+		return null;
+	}
+
+	/**
+	 * Inserts the point into the tree
+	 * @param p2 point to be added
+	 */
+	public void insert(E p2) {
+		size++;
+		if (points != null) {
+			points.add(p2);
+			if (points.size() > capacity && depthLeft > 0) split();
+			return;
+		}
+		childFor(p2).insert(p2);
+	}
+
+	/**
+	 * Turns this leaf into four children and hands its points down to them
+	 */
+	private void split() {
+		c1 = new PRQuadtree<E>(midX, y1, x2, midY, capacity, depthLeft);
+		c2 = new PRQuadtree<E>(x1, y1, midX, midY, capacity, depthLeft);
+		c3 = new PRQuadtree<E>(x1, midY, midX, y2, capacity, depthLeft);
+		c4 = new PRQuadtree<E>(midX, midY, x2, y2, capacity, depthLeft);
+		List<E> old = points;
+		points = null;
+		for (E p : old) childFor(p).insert(p);
+	}
+
+	/**
+	 * Returns the child whose quadrant the point is in (points on a split line go right and down)
+	 */
+	private PRQuadtree<E> childFor(E p) {
+		if (p.getY() < midY) return p.getX() >= midX ? c1 : c2;
+		return p.getX() < midX ? c3 : c4;
+	}
+
+	/**
+	 * Returns the number of points in the tree
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns how many levels the tree has
+	 */
+	public int depth() {
+		if (points != null) return 1;
+		return 1 + Math.max(Math.max(c1.depth(), c2.depth()), Math.max(c3.depth(), c4.depth()));
+	}
+
+	/**
+	 * Builds a list of all the points in the tree
+	 */
+	public List<E> allPoints() {
+		List<E> list = new ArrayList<E>(size);
+		allPointsHelper(list);
+		return list;
+	}
+
+	private void allPointsHelper(List<E> list) {
+		if (points != null) {
+			list.addAll(points);
+		}
+		else {
+			c1.allPointsHelper(list);
+			c2.allPointsHelper(list);
+			c3.allPointsHelper(list);
+			c4.allPointsHelper(list);
+		}
+	}
+
+	/**
+	 * Uses the quadtree to find all points within the circle
+	 * @param cx	circle center x
+	 * @param cy  	circle center y
+	 * @param cr  	circle radius
+	 * @return    	the points in the circle (and the tree's rectangle)
+	 */
+	public List<E> findInCircle(double cx, double cy, double cr) {
+		List<E> list = new ArrayList<E>();
+		findInCircleHelper(cx, cy, cr, list);
+		return list;
+	}
+
+	private void findInCircleHelper(double cx, double cy, double cr, List<E> list) {
+		if (size == 0 || !Geometry.circleIntersectsRectangle(cx, cy, cr, x1, y1, x2, y2)) return;
+		if (points != null) {
+			for (E p : points) {
+				if (Geometry.pointInCircle(p.getX(), p.getY(), cx, cy, cr)) list.add(p);
+			}
+		}
+		else {
+			c1.findInCircleHelper(cx, cy, cr, list);
+			c2.findInCircleHelper(cx, cy, cr, list);
+			c3.findInCircleHelper(cx, cy, cr, list);
+			c4.findInCircleHelper(cx, cy, cr, list);
+		}
+	}
+}
@@ -1,5 +1,9 @@
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * A point quadtree: stores an element at a 2D position, 
@@ -12,8 +16,14 @@ import java.util.List;
  * Finished insert(), size(), allPoints(), and findInCircle(). Added findInCircleHelper() and allPointsHelper()
  */
 public class PointQuadtree<E extends Point2D> {
+	private static final int parallelBuild = 8192;		// build subtrees of at least this many points as separate tasks
+	private static final int insertBuild = 1024;		// build subtrees of at most this many points by inserting them
+	private static final int inOrderBuild = 16384;		// build trees of at most this many by inserting them in order, if shallow
+	private static final int smallRebuild = 32;			// relocate reinserts, rather than builds, subtrees of fewer points
 
 	private E point;							// the point anchoring this node
+	private double splitX, splitY;				// where it splits: its point's position when added (the point may move)
+	private double atX, atY;					// where the tree has its point: when added, or last relocated
 	private int x1, y1;							// upper-left corner of the region
 	private int x2, y2;							// bottom-right corner of the region
 	private PointQuadtree<E> c1, c2, c3, c4;	// children
@@ -22,10 +32,244 @@ public class PointQuadtree<E extends Point2D> {
 	 * Initializes a leaf quadtree, holding the point in the rectangle
 	 */
 	public PointQuadtree(E point, int x1, int y1, int x2, int y2) {
+		this(point, point.getX(), point.getY(), x1, y1, x2, y2);
+	}
+
+	/**
+	 * Initializes a leaf quadtree, holding the point as if it were at (x,y), in the rectangle
+	 */
+	private PointQuadtree(E point, double x, double y, int x1, int y1, int x2, int y2) {
 		this.point = point;
+		this.splitX = x; this.splitY = y;
+		this.atX = x; this.atY = y;
 		this.x1 = x1; this.y1 = y1; this.x2 = x2; this.y2 = y2;
 	}
 
+	/**
+	 * Builds a balanced tree holding all the points at once, rather than inserting them one by one
+	 * (where the insertion order decides the shape, and sorted points make a tree as deep as there are points).
+	 * Up to inOrderBuild points are just inserted in order, which is cheapest while the tree fits in the cache,
+	 * unless some point lands deeper than 4 log2(n), in which case the tree is built as for more points instead.
+	 * For those, each node is anchored at the median of its first, middle, and last points, ordered by x and then y,
+	 * and its children are built from the points in each of its quadrants, by the same rules as insert, so the tree
+	 * is one that some insertion order would have built. Subtrees of at most insertBuild points are finished by
+	 * inserting the rest of their points in bit-reversed order, which is cheaper than splitting them, and still
+	 * spreads out points that come sorted. Big subtrees are built in parallel, when there's more than one processor.
+	 * @param points	the points (not modified)
+	 * @return the tree, or null if there are no points
+	 */
+	public static <E extends Point2D> PointQuadtree<E> build(List<E> points, int x1, int y1, int x2, int y2) {
+		if (points.isEmpty()) return null;
+		if (points.size() <= inOrderBuild) {
+			int maxDepth = 4 * (32 - Integer.numberOfLeadingZeros(points.size()));
+			E first = points.get(0);
+			PointQuadtree<E> tree = new PointQuadtree<E>(first, x1, y1, x2, y2);
+			int i = 1;
+			while (i < points.size()) {
+				E p = points.get(i++);
+				if (tree.insert(p, p.getX(), p.getY()) > maxDepth) break;
+			}
+			if (i == points.size()) return tree;
+		}
+		Builder<E> builder = new Builder<E>(points.size());
+		for (E p : points) builder.add(p, p.getX(), p.getY());
+		return builder.buildAll(x1, y1, x2, y2);
+	}
+
+	/**
+	 * Builds subtrees from an array of points, with their coordinates (read once, or where a tree has them)
+	 * kept in arrays alongside.
+	 * Each split moves the points of a range from one copy of the arrays ("side") to the other, grouped by
+	 * quadrant, and the children are built from that side. Builders working on separate ranges in parallel share
+	 * the arrays, but each has its own scratch space.
+	 */
+	private static class Builder<E extends Point2D> {
+		private final Point2D[][] pts;						// the points, on each side
+		private final double[][] xs, ys;					// their coordinates
+		private final byte[] quads;							// quadrant (0-3) of each point, while splitting
+		private final int[] next = new int[4];				// where split puts each quadrant's next point
+		private int end1, end2, end3;						// where split's quadrants 1-3 ended up ending
+		private int count;									// how many points have been added
+
+		/**
+		 * Makes a builder with room for n points, to be added
+		 */
+		Builder(int n) {
+			pts = new Point2D[2][n];
+			xs = new double[2][n];
+			ys = new double[2][n];
+			quads = new byte[n];
+		}
+
+		/**
+		 * Makes a builder sharing the other's arrays
+		 */
+		Builder(Builder<E> other) {
+			pts = other.pts;
+			xs = other.xs;
+			ys = other.ys;
+			quads = other.quads;
+		}
+
+		/**
+		 * Adds the point, to be placed as if it were at (x,y)
+		 */
+		void add(Point2D p, double x, double y) {
+			pts[0][count] = p;
+			xs[0][count] = x;
+			ys[0][count] = y;
+			count++;
+		}
+
+		/**
+		 * Builds the tree of all the added points in the rectangle, in parallel if there are many
+		 * @return the tree, or null if there are no points
+		 */
+		PointQuadtree<E> buildAll(int x1, int y1, int x2, int y2) {
+			if (count < parallelBuild || Runtime.getRuntime().availableProcessors() == 1) {
+				return build(0, 0, count, x1, y1, x2, y2);
+			}
+			return ForkJoinPool.commonPool().invoke(new BuildTask<E>(this, 0, 0, count, x1, y1, x2, y2));
+		}
+
+		/**
+		 * Builds the subtree of the points in lo..hi on the side (reordering them on both sides), in the rectangle
+		 */
+		@SuppressWarnings("unchecked")
+		PointQuadtree<E> build(int side, int lo, int hi, int x1, int y1, int x2, int y2) {
+			if (lo == hi) return null;
+			if (hi - lo <= insertBuild) return insertAll(side, lo, hi, x1, y1, x2, y2);
+			split(side, lo, hi);
+			int e1 = end1, e2 = end2, e3 = end3;			// before the children's splits overwrite them
+			PointQuadtree<E> tree = new PointQuadtree<E>((E) pts[side][lo], xs[side][lo], ys[side][lo], x1, y1, x2, y2);
+			int px = (int) xs[side][lo], py = (int) ys[side][lo];
+			tree.c1 = build(1 - side, lo + 1, e1, px, y1, x2, py);
+			tree.c2 = build(1 - side, e1, e2, x1, y1, px, py);
+			tree.c3 = build(1 - side, e2, e3, x1, py, px, y2);
+			tree.c4 = build(1 - side, e3, hi, px, py, x2, y2);
+			return tree;
+		}
+
+		/**
+		 * Builds the subtree of the points in lo..hi on the side by inserting them: the anchor first, and then the rest
+		 * in bit-reversed order of their positions (1/2, 1/4, 3/4, 1/8, ... of the way along), so that points
+		 * sorted along the range don't each become the previous one's only child
+		 */
+		@SuppressWarnings("unchecked")
+		private PointQuadtree<E> insertAll(int side, int lo, int hi, int x1, int y1, int x2, int y2) {
+			Point2D[] from = pts[side];
+			double[] fx = xs[side], fy = ys[side];
+			anchor(from, fx, fy, lo, hi);
+			PointQuadtree<E> tree = new PointQuadtree<E>((E) from[lo], fx[lo], fy[lo], x1, y1, x2, y2);
+			int n = hi - lo - 1;
+			if (n == 0) return tree;
+			int bits = 32 - Integer.numberOfLeadingZeros(n - 1);
+			for (int k = 0; k < 1 << bits; k++) {
+				int i = bits == 0 ? 0 : Integer.reverse(k) >>> (32 - bits);
+				if (i < n) tree.insert((E) from[lo + 1 + i], fx[lo + 1 + i], fy[lo + 1 + i]);
+			}
+			return tree;
+		}
+
+		/**
+		 * Moves the anchor of the points in lo..hi on the side, the median of the first, middle, and last
+		 * (by x, then y), to lo
+		 */
+		private static void anchor(Point2D[] pts, double[] xs, double[] ys, int lo, int hi) {
+			int a = lo, b = lo + (hi - lo) / 2, c = hi - 1;
+			if (compare(xs[a], ys[a], xs[b], ys[b]) > 0) { int t = a; a = b; b = t; }
+			if (compare(xs[b], ys[b], xs[c], ys[c]) > 0) b = compare(xs[a], ys[a], xs[c], ys[c]) > 0 ? a : c;
+			swap(pts, xs, ys, lo, b);
+		}
+
+		/**
+		 * Moves the anchor of the points in lo..hi on the side to lo, and copies the rest to the
+		 * other side grouped by their quadrant relative to it: quadrant 1 starting at lo+1, and quadrants 1-3
+		 * ending at end1, end2, and end3. Each point's quadrant is worked out once, in a pass that also counts them.
+		 */
+		void split(int side, int lo, int hi) {
+			Point2D[] from = pts[side], to = pts[1 - side];
+			double[] fx = xs[side], fy = ys[side], tx = xs[1 - side], ty = ys[1 - side];
+			anchor(from, fx, fy, lo, hi);
+			double ax = fx[lo], ay = fy[lo];
+			int n1 = 0, n2 = 0, n3 = 0;
+			for (int i = lo + 1; i < hi; i++) {
+				double x = fx[i], y = fy[i];
+				byte q = (byte) (x >= ax && y <= ay ? 0 : x < ax && y < ay ? 1 : x <= ax && y >= ay ? 2 : 3);	// as insert
+				quads[i] = q;
+				if (q == 0) n1++;
+				else if (q == 1) n2++;
+				else if (q == 2) n3++;
+			}
+			next[0] = lo + 1;
+			next[1] = end1 = next[0] + n1;
+			next[2] = end2 = end1 + n2;
+			next[3] = end3 = end2 + n3;
+			for (int i = lo + 1; i < hi; i++) {
+				int k = next[quads[i]]++;
+				to[k] = from[i];
+				tx[k] = fx[i];
+				ty[k] = fy[i];
+			}
+		}
+
+		private static int compare(double ax, double ay, double bx, double by) {
+			int c = Double.compare(ax, bx);
+			return c != 0 ? c : Double.compare(ay, by);
+		}
+
+		private static void swap(Point2D[] pts, double[] xs, double[] ys, int i, int j) {
+			Point2D t = pts[i]; pts[i] = pts[j]; pts[j] = t;
+			double d = xs[i]; xs[i] = xs[j]; xs[j] = d;
+			d = ys[i]; ys[i] = ys[j]; ys[j] = d;
+		}
+	}
+
+	/**
+	 * Builds a big subtree, with its children as parallel tasks
+	 */
+	private static class BuildTask<E extends Point2D> extends RecursiveTask<PointQuadtree<E>> {
+		private final Builder<E> builder;					// its own, sharing the arrays
+		private final int side, lo, hi, x1, y1, x2, y2;
+
+		BuildTask(Builder<E> builder, int side, int lo, int hi, int x1, int y1, int x2, int y2) {
+			this.builder = builder;
+			this.side = side; this.lo = lo; this.hi = hi;
+			this.x1 = x1; this.y1 = y1; this.x2 = x2; this.y2 = y2;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		protected PointQuadtree<E> compute() {
+			if (hi - lo < parallelBuild) return builder.build(side, lo, hi, x1, y1, x2, y2);
+			builder.split(side, lo, hi);
+			int e1 = builder.end1, e2 = builder.end2, e3 = builder.end3, other = 1 - side;
+			double ax = builder.xs[side][lo], ay = builder.ys[side][lo];
+			PointQuadtree<E> tree = new PointQuadtree<E>((E) builder.pts[side][lo], ax, ay, x1, y1, x2, y2);
+			int px = (int) ax, py = (int) ay;
+			BuildTask<E> t1 = new BuildTask<E>(new Builder<E>(builder), other, lo + 1, e1, px, y1, x2, py);
+			BuildTask<E> t2 = new BuildTask<E>(new Builder<E>(builder), other, e1, e2, x1, y1, px, py);
+			BuildTask<E> t3 = new BuildTask<E>(new Builder<E>(builder), other, e2, e3, x1, py, px, y2);
+			BuildTask<E> t4 = new BuildTask<E>(new Builder<E>(builder), other, e3, hi, px, py, x2, y2);
+			invokeAll(t1, t2, t3, t4);
+			tree.c1 = t1.join();
+			tree.c2 = t2.join();
+			tree.c3 = t3.join();
+			tree.c4 = t4.join();
+			return tree;
+		}
+	}
+
+	/**
+	 * Returns which quadrant (1-4) of this node (x,y) goes in, by the same rules as insert
+	 */
+	private int quadrant(double x, double y) {
+		if (x >= splitX && y <= splitY) return 1;
+		if (x < splitX && y < splitY) return 2;
+		if (x <= splitX && y >= splitY) return 3;
+		return 4;
+	}
+
 	// Getters
 
 	public E getPoint() {
@@ -73,44 +317,190 @@ public class PointQuadtree<E extends Point2D> {
 	 * @param p2 point to be added
 	 */
 	public void insert(E p2) {
+		insert(p2, p2.getX(), p2.getY());
+	}
+
+	/**
+	 * Inserts the point into the tree as if it were at (x,y)
+	 * @return the depth of its new node (1 for this node's child)
+	 */
+	private int insert(E p2, double x, double y) {
 		// if point is in quadrant 1
-		if (p2.getX() >= getPoint().getX() && p2.getY() <= getPoint().getY()) {
+		if (x >= splitX && y <= splitY) {
 			if (hasChild(1)) {
-				c1.insert(p2);
+				return 1 + c1.insert(p2, x, y);
 			}
 			else {
-			c1 = new PointQuadtree<>(p2, (int) getPoint().getX(), getY1(), getX2(), (int) getPoint().getY());
+			c1 = new PointQuadtree<>(p2, x, y, (int) splitX, getY1(), getX2(), (int) splitY);
+			return 1;
 			}
 		}
 		// quadrant 2
-		else if (p2.getX() < getPoint().getX() && p2.getY() < getPoint().getY()) {
+		else if (x < splitX && y < splitY) {
 			if (hasChild(2)) {
-				c2.insert(p2);
+				return 1 + c2.insert(p2, x, y);
 			}
 			else {
-				c2 = new PointQuadtree<>(p2, getX1(), getY1(), (int) getPoint().getX(), (int) getPoint().getY());
+				c2 = new PointQuadtree<>(p2, x, y, getX1(), getY1(), (int) splitX, (int) splitY);
+				return 1;
 			}
 		}
 		// quadrant 3
-		else if (p2.getX() <= getPoint().getX() && p2.getY() >= getPoint().getY()) {
+		else if (x <= splitX && y >= splitY) {
 			if (hasChild(3)) {
-				c3.insert(p2);
+				return 1 + c3.insert(p2, x, y);
 			}
 			else {
-				c3 = new PointQuadtree<>(p2, getX1(), (int) getPoint().getY(), (int) getPoint().getX(), getY2());
+				c3 = new PointQuadtree<>(p2, x, y, getX1(), (int) splitY, (int) splitX, getY2());
+				return 1;
 			}
 		}
 		// quadrant 4
-		else if (p2.getX() > getPoint().getX() && p2.getY() > getPoint().getY()) {
+		else if (x > splitX && y > splitY) {
 			if (hasChild(4)) {
-				c4.insert(p2);
+				return 1 + c4.insert(p2, x, y);
 			}
 			else {
-				c4 = new PointQuadtree<>(p2, (int) getPoint().getX(), (int) getPoint().getY(), getX2(), getY2());
+				c4 = new PointQuadtree<>(p2, x, y, (int) splitX, (int) splitY, getX2(), getY2());
+				return 1;
 			}
 		}
+		return 0;	// in no quadrant (a NaN coordinate), so not added
 	}
 	
+	/**
+	 * Removes the point (the very object) from the tree. It's looked for at its current coordinates, so it must
+	 * not have moved since it was inserted or last relocated (relocate it first if it has).
+	 * The subtree the point anchored is rebuilt from its other points, in place if it's this node.
+	 * @param p		point to be removed
+	 * @return whether the point was found (and removed)
+	 * @throws IllegalStateException if the point is the tree's only one (a tree can't be empty)
+	 */
+	public boolean remove(E p) {
+		List<PointQuadtree<E>> path = pathTo(p, p.getX(), p.getY());
+		if (path == null) return false;
+		PointQuadtree<E> node = path.get(path.size() - 1);
+		PointQuadtree<E> rebuilt = node.buildBelow();
+		if (node == this) {
+			if (rebuilt == null) throw new IllegalStateException("can't remove a tree's only point");
+			become(rebuilt);
+		}
+		else {
+			path.get(path.size() - 2).replaceChild(node, rebuilt);
+		}
+		return true;
+	}
+
+	/**
+	 * Updates the tree for a point that has moved from (oldX,oldY) to its current coordinates.
+	 * (oldX,oldY) must be where the tree has the point: where it was when inserted or last relocated. Other points
+	 * may have moved too, and not been relocated yet, as when a simulation steps them all and then updates the tree;
+	 * the tree keeps them where it has them until they are.
+	 * If the point still falls in the same quadrant of each of its ancestors, nothing needs to be done, even if it anchors
+	 * a subtree, since its node keeps splitting where the point was when added;
+	 * otherwise its subtree is rebuilt without it, and it's inserted again from the root.
+	 * @param p		point that moved (the very object in the tree)
+	 * @return whether the point was found
+	 */
+	public boolean relocate(E p, double oldX, double oldY) {
+		// follow the old position down to p, checking whether the new one takes the same way
+		double x = p.getX(), y = p.getY();
+		PointQuadtree<E> parent = null, node = this;
+		boolean fits = true;
+		while (node != null && node.point != p) {
+			int q = node.quadrant(oldX, oldY);
+			if (fits && node.quadrant(x, y) != q) fits = false;
+			parent = node;
+			node = node.getChild(q);
+		}
+		if (node == null) return false;
+		if (fits) {
+			node.atX = x; node.atY = y;
+			return true;
+		}
+		// not the root (which always fits), so the tree keeps at least the root's point
+		if (node.size() - 1 < smallRebuild) {	// just put the others back, in their quadrant of the parent
+			parent.replaceChild(node, null);
+			for (int q = 1; q <= 4; q++) {
+				if (node.hasChild(q)) node.getChild(q).insertAll(parent);
+			}
+		}
+		else {
+			parent.replaceChild(node, node.buildBelow());
+		}
+		insert(p, x, y);
+		return true;
+	}
+
+	/**
+	 * Builds a tree, in this node's rectangle, of the points below this node (not its own), where the tree has them
+	 * @return the tree, or null if there are none
+	 */
+	private PointQuadtree<E> buildBelow() {
+		Builder<E> builder = new Builder<E>(size() - 1);
+		for (int q = 1; q <= 4; q++) {
+			if (hasChild(q)) getChild(q).addAll(builder);
+		}
+		return builder.buildAll(x1, y1, x2, y2);
+	}
+
+	/**
+	 * Adds this subtree's points to the builder, where the tree has them
+	 */
+	private void addAll(Builder<E> builder) {
+		builder.add(point, atX, atY);
+		if (c1 != null) c1.addAll(builder);
+		if (c2 != null) c2.addAll(builder);
+		if (c3 != null) c3.addAll(builder);
+		if (c4 != null) c4.addAll(builder);
+	}
+
+	/**
+	 * Inserts this subtree's points into the other tree, where this one has them
+	 */
+	private void insertAll(PointQuadtree<E> other) {
+		other.insert(point, atX, atY);
+		if (c1 != null) c1.insertAll(other);
+		if (c2 != null) c2.insertAll(other);
+		if (c3 != null) c3.insertAll(other);
+		if (c4 != null) c4.insertAll(other);
+	}
+
+	/**
+	 * Returns the nodes from this one down to the one anchored by p, following the quadrants of (x,y),
+	 * or null if p isn't there
+	 */
+	private List<PointQuadtree<E>> pathTo(E p, double x, double y) {
+		List<PointQuadtree<E>> path = new ArrayList<PointQuadtree<E>>();
+		PointQuadtree<E> node = this;
+		while (node != null) {
+			path.add(node);
+			if (node.point == p) return path;
+			node = node.getChild(node.quadrant(x, y));
+		}
+		return null;
+	}
+
+	/**
+	 * Takes on the other (same-rectangle) tree's point and children
+	 */
+	private void become(PointQuadtree<E> other) {
+		point = other.point;
+		splitX = other.splitX; splitY = other.splitY;
+		atX = other.atX; atY = other.atY;
+		c1 = other.c1; c2 = other.c2; c3 = other.c3; c4 = other.c4;
+	}
+
+	/**
+	 * Replaces the child with another tree (or null)
+	 */
+	private void replaceChild(PointQuadtree<E> child, PointQuadtree<E> replacement) {
+		if (c1 == child) c1 = replacement;
+		else if (c2 == child) c2 = replacement;
+		else if (c3 == child) c3 = replacement;
+		else if (c4 == child) c4 = replacement;
+	}
+
 	/**
 	 * Finds the number of points in the quadtree (including its descendants)
 	 * @return number of points
@@ -149,6 +539,71 @@ public class PointQuadtree<E extends Point2D> {
 		return circlePoints;
 	}
 
+	/**
+	 * Finds the point closest to (x,y)
+	 * @return the closest point (the first found, if there are ties)
+	 */
+	public E nearest(double x, double y) {
+		return kNearest(x, y, 1).get(0);
+	}
+
+	/**
+	 * Finds the k points closest to (x,y), by best-first search: a priority queue of nodes (keyed by how far their
+	 * rectangles are from (x,y), a lower bound on their points' distances) and points (keyed by their distances)
+	 * is popped nearest first, so each point comes out only once no closer one can remain. Nodes that can't beat
+	 * the k-th closest point seen so far aren't queued at all.
+	 * Rectangles are widened by 1 on their max sides, since children's corners are truncated anchor coordinates.
+	 * @param k		how many points to find
+	 * @return up to k points, closest first
+	 */
+	public List<E> kNearest(double x, double y, int k) {
+		List<E> result = new ArrayList<E>(k);
+		if (k <= 0) return result;
+		PriorityQueue<Candidate<E>> queue = new PriorityQueue<Candidate<E>>();
+		PriorityQueue<Double> best = new PriorityQueue<Double>(k, Collections.reverseOrder());	// k closest point distances so far
+		queue.add(new Candidate<E>(Geometry.rectangleDistanceSquared(x, y, x1, y1, x2 + 1, y2 + 1), this, null));
+		while (!queue.isEmpty() && result.size() < k) {
+			Candidate<E> c = queue.poll();
+			if (c.node == null) {	// nothing left in the queue is closer than this point
+				result.add(c.point);
+				continue;
+			}
+			PointQuadtree<E> node = c.node;
+			double d = Geometry.pointDistanceSquared(node.point.getX(), node.point.getY(), x, y);
+			if (best.size() < k || d < best.peek()) {
+				queue.add(new Candidate<E>(d, null, node.point));
+				best.add(d);
+				if (best.size() > k) best.poll();
+			}
+			for (int q = 1; q <= 4; q++) {
+				PointQuadtree<E> child = node.getChild(q);
+				if (child == null) continue;
+				double bound = Geometry.rectangleDistanceSquared(x, y, child.x1, child.y1, child.x2 + 1, child.y2 + 1);
+				if (best.size() < k || bound <= best.peek()) queue.add(new Candidate<E>(bound, child, null));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * An entry in kNearest's queue: a node, or a point, with its (lower bound) squared distance
+	 */
+	private static class Candidate<E extends Point2D> implements Comparable<Candidate<E>> {
+		final double distance;
+		final PointQuadtree<E> node;	// null for a point
+		final E point;
+
+		Candidate(double distance, PointQuadtree<E> node, E point) {
+			this.distance = distance;
+			this.node = node;
+			this.point = point;
+		}
+
+		public int compareTo(Candidate<E> other) {
+			return Double.compare(distance, other.distance);
+		}
+	}
+
 	/**
 	 * Helper method for allPoints
 	 * @param list list of points
@@ -184,4 +639,80 @@ public class PointQuadtree<E extends Point2D> {
 			if (hasChild(4)) c4.findInCircleHelper(cx, cy, cr, list);
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Calls the visitor with each point within the circle, as findInCircle would find them, without building a list
+	 * @param cx		circle center x
+	 * @param cy		circle center y
+	 * @param cr		circle radius
+	 * @param visitor	called with each point found; returning false ends the query
+	 * @return whether the query ran to the end (rather than being stopped by the visitor)
+	 */
+	public boolean visitInCircle(double cx, double cy, double cr, PointVisitor<? super E> visitor) {
+		if (!Geometry.circleIntersectsRectangle(cx, cy, cr, x1, y1, x2, y2)) return true;
+		if (Geometry.pointInCircle(point.getX(), point.getY(), cx, cy, cr) && !visitor.visit(point)) return false;
+		return (c1 == null || c1.visitInCircle(cx, cy, cr, visitor))
+				&& (c2 == null || c2.visitInCircle(cx, cy, cr, visitor))
+				&& (c3 == null || c3.visitInCircle(cx, cy, cr, visitor))
+				&& (c4 == null || c4.visitInCircle(cx, cy, cr, visitor));
+	}
+
+	/**
+	 * Counts the points within the circle (the same ones findInCircle would find)
+	 */
+	public int countInCircle(double cx, double cy, double cr) {
+		if (!Geometry.circleIntersectsRectangle(cx, cy, cr, x1, y1, x2, y2)) return 0;
+		int num = Geometry.pointInCircle(point.getX(), point.getY(), cx, cy, cr) ? 1 : 0;
+		if (c1 != null) num += c1.countInCircle(cx, cy, cr);
+		if (c2 != null) num += c2.countInCircle(cx, cy, cr);
+		if (c3 != null) num += c3.countInCircle(cx, cy, cr);
+		if (c4 != null) num += c4.countInCircle(cx, cy, cr);
+		return num;
+	}
+
+	/**
+	 * Uses the quadtree to find all points within the (axis-aligned, inclusive) rectangle
+	 * @param rx1	rectangle min x
+	 * @param ry1	rectangle min y
+	 * @param rx2	rectangle max x
+	 * @param ry2	rectangle max y
+	 * @return		the points in the rectangle
+	 */
+	public List<E> findInRectangle(double rx1, double ry1, double rx2, double ry2) {
+		final List<E> found = new ArrayList<E>();
+		visitInRectangle(rx1, ry1, rx2, ry2, new PointVisitor<E>() {
+			public boolean visit(E p) {
+				return found.add(p);
+			}
+		});
+		return found;
+	}
+
+	/**
+	 * Calls the visitor with each point within the rectangle, without building a list.
+	 * Nodes' rectangles are widened by 1 on their max sides, since children's corners are truncated anchor coordinates.
+	 * @param visitor	called with each point found; returning false ends the query
+	 * @return whether the query ran to the end (rather than being stopped by the visitor)
+	 */
+	public boolean visitInRectangle(double rx1, double ry1, double rx2, double ry2, PointVisitor<? super E> visitor) {
+		if (!Geometry.rectanglesIntersect(rx1, ry1, rx2, ry2, x1, y1, x2 + 1, y2 + 1)) return true;
+		if (Geometry.pointInRectangle(point.getX(), point.getY(), rx1, ry1, rx2, ry2) && !visitor.visit(point)) return false;
+		return (c1 == null || c1.visitInRectangle(rx1, ry1, rx2, ry2, visitor))
+				&& (c2 == null || c2.visitInRectangle(rx1, ry1, rx2, ry2, visitor))
+				&& (c3 == null || c3.visitInRectangle(rx1, ry1, rx2, ry2, visitor))
+				&& (c4 == null || c4.visitInRectangle(rx1, ry1, rx2, ry2, visitor));
+	}
+
+	/**
+	 * Counts the points within the rectangle
+	 */
+	public int countInRectangle(double rx1, double ry1, double rx2, double ry2) {
+		if (!Geometry.rectanglesIntersect(rx1, ry1, rx2, ry2, x1, y1, x2 + 1, y2 + 1)) return 0;
+		int num = Geometry.pointInRectangle(point.getX(), point.getY(), rx1, ry1, rx2, ry2) ? 1 : 0;
+		if (c1 != null) num += c1.countInRectangle(rx1, ry1, rx2, ry2);
+		if (c2 != null) num += c2.countInRectangle(rx1, ry1, rx2, ry2);
+		if (c3 != null) num += c3.countInRectangle(rx1, ry1, rx2, ry2);
+		if (c4 != null) num += c4.countInRectangle(rx1, ry1, rx2, ry2);
+		return num;
+	}
+}
@@ -0,0 +1,12 @@
+/**
+ * Callback for quadtree queries, called with each point found, so that a query needn't build a list
+ *
+ * @author Paige Harris and Cha Krupka, Dartmouth CS10, Spring 2022
+ */
+public interface PointVisitor<E> {
+	/**
+	 * Takes a point found by the query
+	 * @return whether to keep going; false ends the query
+	 */
+	public boolean visit(E point);
+}